@@ -0,0 +1,33 @@
+package friends;
+
+/**
+ * Read access to the friendships of a graph whose people are numbered from 0, so that a
+ * search can be written once for every form of the graph.
+ *
+ */
+interface Adjacency {
+
+	/**
+	 * Number of people in the graph
+	 *
+	 * @return Number of people
+	 */
+	int size();
+
+	/**
+	 * Number of friends of a person
+	 *
+	 * @param v Index of person
+	 * @return Number of friends
+	 */
+	int degree(int v);
+
+	/**
+	 * Copies the indexes of the friends of a person into a buffer, as many as fit.
+	 *
+	 * @param v Index of person
+	 * @param buffer Buffer for the indexes of the friends
+	 * @return Number of friends, more than were copied if the buffer is too short
+	 */
+	int friends(int v, int[] buffer);
+}
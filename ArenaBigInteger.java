@@ -0,0 +1,298 @@
+package bigint;
+
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.ValueLayout;
+
+import structures.NodeArena;
+
+/**
+ * This class is a BigInteger whose digit list lives off-heap, in a NodeArena, instead of
+ * in DigitNode objects.
+ *
+ * The digits are stored exactly like those of a BigInteger: one node per digit, Least
+ * Significant Digit first, with no insignificant zeros, so 0 is the empty list. Each node
+ * is a DIGIT_NODE, 8 bytes against about 24 for a DigitNode, and none of them is seen by
+ * the garbage collector. Results are allocated in the arena of the operands, and stay
+ * there until the arena is reset or closed.
+ *
+ */
+public class ArenaBigInteger {
+
+	/**
+	 * Layout of one digit node: the digit, and the handle of the next node
+	 */
+	public static final MemoryLayout DIGIT_NODE = MemoryLayout.structLayout(
+			ValueLayout.JAVA_INT.withName("digit"),
+			ValueLayout.JAVA_INT.withName("next"));
+
+	private static final long DIGIT = DIGIT_NODE.byteOffset(MemoryLayout.PathElement.groupElement("digit"));
+	private static final long NEXT = DIGIT_NODE.byteOffset(MemoryLayout.PathElement.groupElement("next"));
+
+	private final NodeArena arena;
+	private final boolean negative;
+	private final int numDigits;
+	private final int front;
+
+	private ArenaBigInteger(NodeArena arena, boolean negative, int numDigits, int front) {
+		this.arena = arena;
+		this.negative = negative && numDigits > 0;
+		this.numDigits = numDigits;
+		this.front = front;
+	}
+
+	/**
+	 * Creates an arena for digit nodes.
+	 *
+	 * @param shared True if the integers will be read by other threads
+	 * @return Empty arena with the DIGIT_NODE layout
+	 */
+	public static NodeArena newArena(boolean shared) {
+		return new NodeArena(DIGIT_NODE, shared);
+	}
+
+	/*
+	 * Appends a digit after tail (or as the only node if tail is NIL), returns the new node
+	 */
+	private static int append(NodeArena arena, int tail, int digit) {
+		int node = arena.allocate();
+		arena.setInt(node, DIGIT, digit);
+		arena.setInt(node, NEXT, NodeArena.NIL);
+		if (tail != NodeArena.NIL)
+			arena.setInt(tail, NEXT, node);
+		return node;
+	}
+
+	/*
+	 * A new digit list in an arena, built least significant digit first. Zeros are held
+	 * back until a nonzero digit follows them, so the list never ends in insignificant
+	 * zeros.
+	 */
+	private static final class Digits {
+		final NodeArena arena;
+		int front = NodeArena.NIL, tail = NodeArena.NIL, length = 0, zeros = 0;
+
+		Digits(NodeArena arena) {
+			this.arena = arena;
+		}
+
+		void add(int digit) {
+			if (digit == 0) {
+				zeros++;
+				return;
+			}
+			for (; zeros > 0; zeros--)
+				put(0);
+			put(digit);
+		}
+
+		private void put(int digit) {
+			tail = append(arena, tail, digit);
+			if (front == NodeArena.NIL)
+				front = tail;
+			length++;
+		}
+
+		ArenaBigInteger integer(boolean negative) {
+			return new ArenaBigInteger(arena, negative, length, front);
+		}
+	}
+
+	/**
+	 * Parses an input integer string into an integer in an arena, in the same format as
+	 * BigInteger.parse.
+	 *
+	 * @param integer Integer string that is to be parsed
+	 * @param arena Arena for the digit nodes, created by newArena
+	 * @return Integer stored in the arena
+	 * @throws IllegalArgumentException If input is incorrectly formatted
+	 */
+	public static ArenaBigInteger parse(String integer, NodeArena arena)
+	throws IllegalArgumentException {
+		String s = integer.trim();
+		int start = 0;
+		boolean negative = false;
+		if (s.length() > 0 && (s.charAt(0) == '+' || s.charAt(0) == '-')) {
+			negative = s.charAt(0) == '-';
+			start = 1;
+		}
+		if (start == s.length())
+			throw new IllegalArgumentException();
+
+		Digits digits = new Digits(arena);
+		for (int i = s.length() - 1; i >= start; i--) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9')
+				throw new IllegalArgumentException();
+			digits.add(c - '0');
+		}
+		return digits.integer(negative);
+	}
+
+	/**
+	 * Copies a BigInteger into an arena.
+	 *
+	 * @param value Integer to copy
+	 * @param arena Arena for the digit nodes, created by newArena
+	 * @return Integer stored in the arena
+	 */
+	public static ArenaBigInteger of(BigInteger value, NodeArena arena) {
+		int front = NodeArena.NIL, tail = NodeArena.NIL, length = 0;
+		for (DigitNode d = value.front; d != null; d = d.next, length++) {
+			tail = append(arena, tail, d.digit);
+			if (front == NodeArena.NIL)
+				front = tail;
+		}
+		return new ArenaBigInteger(arena, value.negative, length, front);
+	}
+
+	/**
+	 * Copies this integer back onto the heap.
+	 *
+	 * @return BigInteger with the same value
+	 */
+	public BigInteger toBigInteger() {
+		BigInteger value = new BigInteger();
+		value.negative = negative;
+		value.numDigits = numDigits;
+		DigitNode tail = null;
+		for (int n = front; n != NodeArena.NIL; n = arena.getInt(n, NEXT)) {
+			DigitNode d = new DigitNode(arena.getInt(n, DIGIT), null);
+			if (tail == null) value.front = d;
+			else tail.next = d;
+			tail = d;
+		}
+		return value;
+	}
+
+	/*
+	 * Compares the magnitudes of two integers, walking both digit lists once: the last
+	 * difference seen is the most significant one
+	 */
+	private static int compare(ArenaBigInteger a, ArenaBigInteger b) {
+		if (a.numDigits != b.numDigits)
+			return a.numDigits - b.numDigits;
+		NodeArena arena = a.arena;
+		int difference = 0;
+		for (int x = a.front, y = b.front; x != NodeArena.NIL; x = arena.getInt(x, NEXT), y = arena.getInt(y, NEXT)) {
+			int d = arena.getInt(x, DIGIT) - arena.getInt(y, DIGIT);
+			if (d != 0)
+				difference = d;
+		}
+		return difference;
+	}
+
+	/**
+	 * Adds two integers, either or both of which may be negative. Same as BigInteger.add.
+	 *
+	 * @param first First integer
+	 * @param second Second integer, in the same arena as the first
+	 * @return Sum, in the same arena
+	 * @throws IllegalArgumentException If the integers are in different arenas
+	 */
+	public static ArenaBigInteger add(ArenaBigInteger first, ArenaBigInteger second)
+	throws IllegalArgumentException {
+		if (first.arena != second.arena)
+			throw new IllegalArgumentException("Integers are in different arenas");
+		NodeArena arena = first.arena;
+		boolean same = first.negative == second.negative;
+		ArenaBigInteger a = first, b = second;
+		if (!same && compare(first, second) < 0) {
+			a = second;
+			b = first;
+		}
+
+		// |a| >= |b| whenever the signs differ, so the last borrow is always paid back
+		Digits sum = new Digits(arena);
+		int x = a.front, y = b.front, carry = 0;
+		while (x != NodeArena.NIL || y != NodeArena.NIL || carry != 0) {
+			int dx = 0, dy = 0;
+			if (x != NodeArena.NIL) {
+				dx = arena.getInt(x, DIGIT);
+				x = arena.getInt(x, NEXT);
+			}
+			if (y != NodeArena.NIL) {
+				dy = arena.getInt(y, DIGIT);
+				y = arena.getInt(y, NEXT);
+			}
+			int d = same ? dx + dy + carry : dx - dy + carry;
+			carry = d < 0 ? -1 : d / 10;
+			sum.add(d < 0 ? d + 10 : d % 10);
+		}
+		return sum.integer(a.negative);
+	}
+
+	/**
+	 * Multiplies two integers. Same as BigInteger.multiply.
+	 *
+	 * Each digit of the second integer adds its row of the long multiplication straight
+	 * into the product's digit nodes, starting one node further along than the row before,
+	 * and new nodes are appended as the product grows.
+	 *
+	 * @param first First integer
+	 * @param second Second integer, in the same arena as the first
+	 * @return Product, in the same arena
+	 * @throws IllegalArgumentException If the integers are in different arenas
+	 */
+	public static ArenaBigInteger multiply(ArenaBigInteger first, ArenaBigInteger second)
+	throws IllegalArgumentException {
+		if (first.arena != second.arena)
+			throw new IllegalArgumentException("Integers are in different arenas");
+		NodeArena arena = first.arena;
+		boolean negative = first.negative ^ second.negative;
+		if (first.numDigits == 0 || second.numDigits == 0)
+			return new ArenaBigInteger(arena, negative, 0, NodeArena.NIL);
+
+		int front = NodeArena.NIL, tail = NodeArena.NIL, length = 0;
+		int row = NodeArena.NIL;
+		for (int y = second.front; y != NodeArena.NIL; y = arena.getInt(y, NEXT)) {
+			int dy = arena.getInt(y, DIGIT), carry = 0;
+			int node = row, start = NodeArena.NIL;
+			for (int x = first.front; x != NodeArena.NIL; x = arena.getInt(x, NEXT)) {
+				if (node == NodeArena.NIL) {
+					node = tail = append(arena, tail, 0);
+					if (front == NodeArena.NIL)
+						front = node;
+					length++;
+				}
+				if (start == NodeArena.NIL)
+					start = node;
+				int d = arena.getInt(node, DIGIT) + arena.getInt(x, DIGIT) * dy + carry;
+				arena.setInt(node, DIGIT, d % 10);
+				carry = d / 10;
+				node = arena.getInt(node, NEXT);
+			}
+			// the node after this row's last one is always new
+			if (carry != 0) {
+				tail = append(arena, tail, carry);
+				length++;
+			}
+			row = arena.getInt(start, NEXT);
+		}
+		// neither top digit is zero, so neither is the product's
+		return new ArenaBigInteger(arena, negative, length, front);
+	}
+
+	/**
+	 * Number of digits in this integer
+	 *
+	 * @return Number of significant digits, 0 for zero
+	 */
+	public int numDigits() {
+		return numDigits;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		if (numDigits == 0)
+			return "0";
+		char[] chars = new char[negative ? numDigits + 1 : numDigits];
+		int i = chars.length;
+		for (int n = front; n != NodeArena.NIL; n = arena.getInt(n, NEXT))
+			chars[--i] = (char) ('0' + arena.getInt(n, DIGIT));
+		if (negative)
+			chars[0] = '-';
+		return new String(chars);
+	}
+}
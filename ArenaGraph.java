@@ -0,0 +1,218 @@
+package friends;
+
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import structures.NodeArena;
+
+/**
+ * This class is a friends graph whose Friend lists live off-heap, in a NodeArena, instead
+ * of in Friend objects.
+ *
+ * The adjacency has the same shape as that of a Graph: each person has a linked list of
+ * friend nodes, each holding the index of the friend and the handle of the next node.
+ * That is 8 bytes per edge direction, where a Friend takes about 24, and the collector
+ * sees none of them. Names stay on the heap. Friendships can be added and removed, but
+ * the node of a removed friendship is only freed with the whole arena.
+ *
+ */
+public class ArenaGraph implements Adjacency {
+
+	/**
+	 * Layout of one friend node
+	 */
+	public static final MemoryLayout FRIEND_NODE = MemoryLayout.structLayout(
+			ValueLayout.JAVA_INT.withName("fnum"),
+			ValueLayout.JAVA_INT.withName("next"));
+
+	static final long FNUM = FRIEND_NODE.byteOffset(MemoryLayout.PathElement.groupElement("fnum"));
+	static final long NEXT = FRIEND_NODE.byteOffset(MemoryLayout.PathElement.groupElement("next"));
+
+	final NodeArena arena;
+	final int[] first;
+	private final String[] names;
+	private final HashMap<String, Integer> map;
+
+	// searchers for shortest chains, sized for this graph
+	private final ChainSearch.Pool searches;
+
+	// the friend lists in the arena, for the changes written once in FriendLists;
+	// handles are boxed only while a friendship is added or removed
+	private final FriendLists<Integer> lists = new FriendLists<Integer>() {
+		public int indexOf(String name) {
+			return ArenaGraph.this.indexOf(name);
+		}
+
+		public Integer first(int v) {
+			return first[v] == NodeArena.NIL ? null : first[v];
+		}
+
+		public void setFirst(int v, Integer node) {
+			first[v] = node == null ? NodeArena.NIL : node;
+		}
+
+		public Integer next(Integer node) {
+			int next = arena.getInt(node, NEXT);
+			return next == NodeArena.NIL ? null : next;
+		}
+
+		public void setNext(Integer node, Integer next) {
+			arena.setInt(node, NEXT, next == null ? NodeArena.NIL : next);
+		}
+
+		public int fnum(Integer node) {
+			return arena.getInt(node, FNUM);
+		}
+
+		public Integer newNode(int fnum, Integer next) {
+			return friend(fnum, next == null ? NodeArena.NIL : next);
+		}
+	};
+
+	/**
+	 * Creates an arena for friend nodes.
+	 *
+	 * @param shared True if the graph will be read by other threads
+	 * @return Empty arena with the FRIEND_NODE layout
+	 */
+	public static NodeArena newArena(boolean shared) {
+		return new NodeArena(FRIEND_NODE, shared);
+	}
+
+	/**
+	 * Copies a graph into an arena. The graph is not modified, and later changes to it
+	 * are not seen by the copy.
+	 *
+	 * @param g Graph to copy
+	 * @param arena Arena for the friend nodes, created by newArena
+	 */
+	public ArenaGraph(Graph g, NodeArena arena) {
+		this.arena = arena;
+		int n = g.members.length;
+		first = new int[n];
+		names = new String[n];
+		map = new HashMap<String, Integer>(n * 2);
+		searches = new ChainSearch.Pool(n);
+		for (int v = 0; v < n; v++) {
+			names[v] = g.members[v].name;
+			map.put(names[v], v);
+			// keep the order of the Friend list
+			int last = NodeArena.NIL;
+			first[v] = NodeArena.NIL;
+			for (Friend f = g.members[v].first; f != null; f = f.next) {
+				int node = friend(f.fnum, NodeArena.NIL);
+				if (last == NodeArena.NIL) first[v] = node;
+				else arena.setInt(last, NEXT, node);
+				last = node;
+			}
+		}
+	}
+
+	private int friend(int fnum, int next) {
+		int node = arena.allocate();
+		arena.setInt(node, FNUM, fnum);
+		arena.setInt(node, NEXT, next);
+		return node;
+	}
+
+	/**
+	 * Number of people in the graph
+	 *
+	 * @return Number of people
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * Number of friends of a person
+	 *
+	 * @param v Index of person
+	 * @return Number of friends
+	 */
+	public int degree(int v) {
+		int degree = 0;
+		for (int node = first[v]; node != NodeArena.NIL; node = arena.getInt(node, NEXT))
+			degree++;
+		return degree;
+	}
+
+	/**
+	 * Copies the indexes of the friends of a person into a buffer, as many as fit.
+	 *
+	 * @param v Index of person
+	 * @param buffer Buffer for the indexes of the friends
+	 * @return Number of friends, more than were copied if the buffer is too short
+	 */
+	public int friends(int v, int[] buffer) {
+		int degree = 0;
+		for (int node = first[v]; node != NodeArena.NIL; node = arena.getInt(node, NEXT)) {
+			if (degree < buffer.length)
+				buffer[degree] = arena.getInt(node, FNUM);
+			degree++;
+		}
+		return degree;
+	}
+
+	/**
+	 * Name of a person
+	 *
+	 * @param v Index of person
+	 * @return Name
+	 */
+	public String name(int v) {
+		return names[v];
+	}
+
+	/**
+	 * Index of a person
+	 *
+	 * @param name Name of person
+	 * @return Index of person, or -1 if there is no one by that name
+	 */
+	public int indexOf(String name) {
+		Integer v = map.get(name);
+		return v == null ? -1 : v;
+	}
+
+	/**
+	 * Finds the shortest chain of people from p1 to p2, walking the friend lists in the
+	 * arena. Same as Friends.shortestChain(Graph, String, String).
+	 *
+	 * @param p1 Person with whom the chain originates
+	 * @param p2 Person at whom the chain terminates
+	 * @return The shortest chain from p1 to p2. Null if there is no
+	 *         path from p1 to p2
+	 */
+	public ArrayList<String> shortestChain(String p1, String p2) {
+		return Friends.shortestChain(this, searches, this::indexOf, this::name, p1, p2);
+	}
+
+	/**
+	 * Adds a friendship between two people.
+	 *
+	 * @param p1 Name of one person
+	 * @param p2 Name of other person
+	 * @return True if the friendship was added, false if they were already friends
+	 * @throws IllegalArgumentException If either person is not in the graph, or p1 is p2
+	 */
+	public boolean addFriendship(String p1, String p2)
+	throws IllegalArgumentException {
+		return lists.addFriendship(lists.person(p1), lists.person(p2));
+	}
+
+	/**
+	 * Removes a friendship between two people.
+	 *
+	 * @param p1 Name of one person
+	 * @param p2 Name of other person
+	 * @return True if the friendship was removed, false if they were not friends
+	 * @throws IllegalArgumentException If either person is not in the graph
+	 */
+	public boolean removeFriendship(String p1, String p2)
+	throws IllegalArgumentException {
+		return lists.removeFriendship(lists.person(p1), lists.person(p2));
+	}
+}
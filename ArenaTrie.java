@@ -0,0 +1,185 @@
+package trie;
+
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+
+import structures.NodeArena;
+
+/**
+ * This class is a compressed trie whose nodes live off-heap, in a NodeArena, instead of
+ * in TrieNode and Indexes objects.
+ *
+ * It has the same shape as the trie built by Trie.buildTrie: each node other than the root
+ * holds the Indexes of its substring (word index, start index, end index) inline, plus
+ * the handles of its first child and next sibling. That is 16 bytes per node, where a
+ * TrieNode with its Indexes takes about 48 bytes in two objects. As with Trie, no word
+ * may be a prefix of another.
+ *
+ */
+public class ArenaTrie {
+
+	/**
+	 * Layout of one trie node
+	 */
+	public static final MemoryLayout TRIE_NODE = MemoryLayout.structLayout(
+			ValueLayout.JAVA_INT.withName("wordIndex"),
+			ValueLayout.JAVA_SHORT.withName("startIndex"),
+			ValueLayout.JAVA_SHORT.withName("endIndex"),
+			ValueLayout.JAVA_INT.withName("firstChild"),
+			ValueLayout.JAVA_INT.withName("sibling"));
+
+	private static final long WORD = offset("wordIndex"), START = offset("startIndex"), END = offset("endIndex");
+	private static final long CHILD = offset("firstChild"), SIBLING = offset("sibling");
+
+	private static long offset(String field) {
+		return TRIE_NODE.byteOffset(MemoryLayout.PathElement.groupElement(field));
+	}
+
+	private final NodeArena arena;
+	private final String[] allWords;
+	private final int root;
+	private int nodes = 0;
+
+	private ArenaTrie(NodeArena arena, String[] allWords) {
+		this.arena = arena;
+		this.allWords = allWords;
+		root = node(-1, 0, -1);
+	}
+
+	/**
+	 * Creates an arena for trie nodes.
+	 *
+	 * @param shared True if the trie will be read by other threads
+	 * @return Empty arena with the TRIE_NODE layout
+	 */
+	public static NodeArena newArena(boolean shared) {
+		return new NodeArena(TRIE_NODE, shared);
+	}
+
+	private int node(int wordIndex, int start, int end) {
+		int n = arena.allocate();
+		nodes++;
+		arena.setInt(n, WORD, wordIndex);
+		arena.setShort(n, START, (short) start);
+		arena.setShort(n, END, (short) end);
+		arena.setInt(n, CHILD, NodeArena.NIL);
+		arena.setInt(n, SIBLING, NodeArena.NIL);
+		return n;
+	}
+
+	/*
+	 * The arena nodes, for the trie algorithms in TrieNodes
+	 */
+	private final TrieNodes.Writable view = new TrieNodes.Writable() {
+		public int root() {
+			return root;
+		}
+
+		public int wordIndex(int node) {
+			return arena.getInt(node, WORD);
+		}
+
+		public int endIndex(int node) {
+			return arena.getShort(node, END);
+		}
+
+		public int firstChild(int node) {
+			return arena.getInt(node, CHILD);
+		}
+
+		public int sibling(int node) {
+			return arena.getInt(node, SIBLING);
+		}
+
+		public char charAt(int node, int pos) {
+			return allWords[arena.getInt(node, WORD)].charAt(pos);
+		}
+
+		public int newNode(int wordIndex, int startIndex, int endIndex) {
+			return node(wordIndex, startIndex, endIndex);
+		}
+
+		public void setStartIndex(int node, int startIndex) {
+			arena.setShort(node, START, (short) startIndex);
+		}
+
+		public void setFirstChild(int node, int child) {
+			arena.setInt(node, CHILD, child);
+		}
+
+		public void setSibling(int node, int sibling) {
+			arena.setInt(node, SIBLING, sibling);
+		}
+
+		public String word(int wordIndex) {
+			return allWords[wordIndex];
+		}
+	};
+
+	/**
+	 * Builds a trie by inserting all words in the input array, in sequence, like
+	 * Trie.buildTrie.
+	 *
+	 * @param allWords Input array of words (lowercase) to be inserted
+	 * @param arena Arena for the nodes, created by newArena
+	 * @return Trie with all words inserted
+	 * @throws IllegalArgumentException If a word is empty or too long, or one word is a
+	 *         prefix of another
+	 */
+	public static ArenaTrie build(String[] allWords, NodeArena arena)
+	throws IllegalArgumentException {
+		ArenaTrie trie = new ArenaTrie(arena, allWords);
+		for (int i = 0; i < allWords.length; i++)
+			trie.view.insert(i);
+		return trie;
+	}
+
+	/**
+	 * Copies a trie built by Trie.buildTrie into an arena.
+	 *
+	 * @param root Root of trie
+	 * @param allWords Array of words that have been inserted into the trie
+	 * @param arena Arena for the nodes, created by newArena
+	 * @return Trie with the same nodes, in the same order
+	 */
+	public static ArenaTrie copyOf(TrieNode root, String[] allWords, NodeArena arena) {
+		ArenaTrie trie = new ArenaTrie(arena, allWords);
+		if (root != null)
+			arena.setInt(trie.root, CHILD, trie.copy(root.firstChild));
+		return trie;
+	}
+
+	private int copy(TrieNode first) {
+		int head = NodeArena.NIL, last = NodeArena.NIL;
+		for (TrieNode t = first; t != null; t = t.sibling) {
+			int n = node(t.substr.wordIndex, t.substr.startIndex, t.substr.endIndex);
+			arena.setInt(n, CHILD, copy(t.firstChild));
+			if (last == NodeArena.NIL) head = n;
+			else arena.setInt(last, SIBLING, n);
+			last = n;
+		}
+		return head;
+	}
+
+	/**
+	 * Number of nodes in the trie, including the root
+	 *
+	 * @return Node count
+	 */
+	public int nodeCount() {
+		return nodes;
+	}
+
+	/**
+	 * Given a prefix, returns its "completion list", i.e. all the words in the trie that
+	 * start with the prefix. Same as Trie.completionList, but returns word indexes.
+	 *
+	 * @param prefix Prefix to be completed with words in trie
+	 * @return Indexes in allWords of all words that start with the prefix, or null if
+	 *         there is none
+	 */
+	public ArrayList<Integer> completionList(String prefix) {
+		return view.completionList(prefix);
+	}
+}
@@ -0,0 +1,207 @@
+package friends;
+
+import java.util.Arrays;
+
+/**
+ * This class finds the connectors (articulation points), the bridges, and the biconnected
+ * components of a graph, in one depth-first search (Tarjan).
+ *
+ * The search is iterative: the DFS path is kept in an int array along with, for each
+ * person on it, the position of the next friend to look at. It therefore runs on graphs
+ * of any depth without touching the thread stack, and every piece of working state is
+ * a primitive array, so it runs in O(n + e) time and memory.
+ *
+ * A biconnected component is a maximal set of people that stays connected when any one
+ * of them is removed. People with no friends belong to no component.
+ *
+ * A friendship may be listed more than once. Only the one copy that the search went
+ * down is skipped on the way back, so a second copy counts as a back edge, and two
+ * people joined twice are never a bridge.
+ *
+ */
+public class Biconnectivity {
+
+	private final boolean[] connector;
+	private int[] bridges = new int[16];
+	private int bridgeCount = 0;
+	private int[] componentStart = new int[16];
+	private int[] members = new int[16];
+	private int componentCount = 0, memberCount = 0;
+
+	/**
+	 * Runs the search over a CSR graph.
+	 *
+	 * @param g CSR graph to be searched
+	 */
+	public Biconnectivity(CsrGraph g) {
+		int n = g.size();
+		connector = new boolean[n];
+		int[] disc = new int[n], low = new int[n], parent = new int[n], next = new int[n];
+		// position in w's friend list of the tree edge back to its parent, -1 until met
+		int[] parentEdge = new int[n];
+		int[] path = new int[n];
+		int[] edges = new int[2 * Math.max(1, g.edgeCount())];
+		int[] mark = new int[n];
+		int time = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (disc[root] != 0)
+				continue;
+
+			int top = 0, edgeTop = 0, rootChildren = 0;
+			path[top++] = root;
+			disc[root] = low[root] = ++time;
+			parent[root] = -1;
+			parentEdge[root] = -1;
+			next[root] = g.offsets[root];
+
+			while (top > 0) {
+				int v = path[top - 1];
+				if (next[v] < g.offsets[v + 1]) {
+					int k = next[v]++;
+					int w = g.neighbors[k];
+					if (w == parent[v] && parentEdge[v] == -1) {
+						// the tree edge we came down, once
+						parentEdge[v] = k;
+						continue;
+					}
+					if (disc[w] == 0) {
+						// tree edge, go down to w
+						parent[w] = v;
+						parentEdge[w] = -1;
+						disc[w] = low[w] = ++time;
+						next[w] = g.offsets[w];
+						path[top++] = w;
+						edges[edgeTop++] = v;
+						edges[edgeTop++] = w;
+						if (v == root)
+							rootChildren++;
+					}
+					else if (disc[w] < disc[v]) {
+						// back edge to an ancestor
+						low[v] = Math.min(low[v], disc[w]);
+						edges[edgeTop++] = v;
+						edges[edgeTop++] = w;
+					}
+					continue;
+				}
+
+				// all friends of v are done, go back up to its parent
+				top--;
+				int p = parent[v];
+				if (p == -1)
+					continue;
+				low[p] = Math.min(low[p], low[v]);
+				if (low[v] > disc[p])
+					addBridge(p, v);
+				if (low[v] >= disc[p]) {
+					if (p != root)
+						connector[p] = true;
+					// the edges above (p, v) on the edge stack form one component
+					componentStart = grow(componentStart, componentCount + 2);
+					componentStart[componentCount] = memberCount;
+					componentCount++;
+					int a, b;
+					do {
+						b = edges[--edgeTop];
+						a = edges[--edgeTop];
+						addMember(a, mark);
+						addMember(b, mark);
+					} while (a != p || b != v);
+				}
+			}
+			if (rootChildren > 1)
+				connector[root] = true;
+		}
+		componentStart = grow(componentStart, componentCount + 1);
+		componentStart[componentCount] = memberCount;
+	}
+
+	private void addBridge(int a, int b) {
+		bridges = grow(bridges, 2 * bridgeCount + 2);
+		bridges[2 * bridgeCount] = a;
+		bridges[2 * bridgeCount + 1] = b;
+		bridgeCount++;
+	}
+
+	/*
+	 * Adds v to the current component, unless it is already in it. Components are
+	 * numbered from 1 in mark.
+	 */
+	private void addMember(int v, int[] mark) {
+		if (mark[v] == componentCount)
+			return;
+		mark[v] = componentCount;
+		members = grow(members, memberCount + 1);
+		members[memberCount++] = v;
+	}
+
+	private static int[] grow(int[] a, int size) {
+		return size <= a.length ? a : Arrays.copyOf(a, Math.max(size, a.length * 2));
+	}
+
+	/**
+	 * Tells whether a person is a connector, i.e. whether removing them would split
+	 * their part of the graph in two or more.
+	 *
+	 * @param v Index of person
+	 * @return True if v is a connector
+	 */
+	public boolean isConnector(int v) {
+		return connector[v];
+	}
+
+	/**
+	 * Indexes of all connectors, in increasing order
+	 *
+	 * @return Indexes of connectors
+	 */
+	public int[] connectors() {
+		int count = 0;
+		for (boolean c : connector)
+			if (c) count++;
+		int[] result = new int[count];
+		for (int v = 0, i = 0; v < connector.length; v++)
+			if (connector[v]) result[i++] = v;
+		return result;
+	}
+
+	/**
+	 * Number of bridges, i.e. friendships whose removal would split the graph
+	 *
+	 * @return Number of bridges
+	 */
+	public int bridgeCount() {
+		return bridgeCount;
+	}
+
+	/**
+	 * Returns a bridge.
+	 *
+	 * @param i Index of bridge, from 0 to bridgeCount()-1
+	 * @return The two people at the ends of the bridge
+	 */
+	public int[] bridge(int i) {
+		return new int[] { bridges[2 * i], bridges[2 * i + 1] };
+	}
+
+	/**
+	 * Number of biconnected components
+	 *
+	 * @return Number of components
+	 */
+	public int componentCount() {
+		return componentCount;
+	}
+
+	/**
+	 * Returns the people in a biconnected component. A connector belongs to every
+	 * component it joins.
+	 *
+	 * @param i Index of component, from 0 to componentCount()-1
+	 * @return Indexes of the people in the component
+	 */
+	public int[] component(int i) {
+		return Arrays.copyOfRange(members, componentStart[i], componentStart[i + 1]);
+	}
+}
@@ -0,0 +1,144 @@
+package friends;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * This class is a driver that checks Biconnectivity against brute force on small random
+ * graphs: a person is a connector if removing them splits their part of the graph, a
+ * friendship is a bridge if removing it splits the graph, and each biconnected component
+ * must stay connected without any one of its people. The graphs have about twice as many
+ * friendships as people, on so few people that many friendships are listed twice.
+ *
+ * Usage: java friends.BiconnectivityCheck [graphs [people [seed]]]
+ *
+ */
+public class BiconnectivityCheck {
+
+	public static void main(String[] args) {
+		int graphs = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		int people = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+		int duplicated = 0, bridges = 0;
+		for (int i = 0; i < graphs; i++) {
+			int n = 2 + (int) ((seed + i) % (people - 1));
+			CsrGraph g = new CsrGraph(CsrGraphBenchmark.randomGraph(n, n + i % (2 * n), seed + i));
+			Biconnectivity b = new Biconnectivity(g);
+			int base = components(g, -1, -1, -1);
+
+			for (int v = 0; v < n; v++) {
+				boolean split = g.degree(v) > 0 && components(g, v, -1, -1) > base;
+				if (split != b.isConnector(v))
+					fail(i, "connector " + v);
+			}
+
+			// a friendship listed twice is never a bridge
+			HashMap<Long, Integer> copies = new HashMap<Long, Integer>();
+			for (int v = 0; v < n; v++)
+				for (int k = g.offsets[v]; k < g.offsets[v + 1]; k++)
+					if (v < g.neighbors[k])
+						copies.merge(((long) v << 32) | g.neighbors[k], 1, Integer::sum);
+			HashSet<Long> expected = new HashSet<Long>();
+			for (Long pair : copies.keySet()) {
+				int v = (int) (pair >>> 32), w = (int) (long) pair;
+				if (copies.get(pair) > 1)
+					duplicated++;
+				else if (components(g, -1, v, w) > base)
+					expected.add(pair);
+			}
+			HashSet<Long> found = new HashSet<Long>();
+			for (int j = 0; j < b.bridgeCount(); j++) {
+				int[] e = b.bridge(j);
+				found.add(((long) Math.min(e[0], e[1]) << 32) | Math.max(e[0], e[1]));
+			}
+			if (!found.equals(expected) || b.bridgeCount() != expected.size())
+				fail(i, b.bridgeCount() + " bridges, not " + expected.size());
+			bridges += expected.size();
+
+			// every friendship is inside a component, and no component falls apart
+			for (int v = 0; v < n; v++)
+				for (int k = g.offsets[v]; k < g.offsets[v + 1]; k++)
+					if (!together(b, v, g.neighbors[k]))
+						fail(i, "friendship " + v + "-" + g.neighbors[k] + " in no component");
+			for (int c = 0; c < b.componentCount(); c++) {
+				int[] members = b.component(c);
+				for (int without : members)
+					if (members.length > 2 && !connected(g, members, without))
+						fail(i, "component " + c + " falls apart without " + without);
+			}
+		}
+		System.out.printf("ok: %d graphs, %d bridges, %d friendships listed twice or more%n", graphs, bridges, duplicated);
+	}
+
+	/*
+	 * Connected components of g without person skip and without every copy of the
+	 * friendship a-b. People with no friends left count as components of their own,
+	 * except skip.
+	 */
+	private static int components(CsrGraph g, int skip, int a, int b) {
+		boolean[] seen = new boolean[g.size()];
+		int count = 0;
+		for (int s = 0; s < g.size(); s++) {
+			if (s == skip || seen[s])
+				continue;
+			count++;
+			ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+			queue.add(s);
+			seen[s] = true;
+			while (!queue.isEmpty()) {
+				int v = queue.poll();
+				for (int k = g.offsets[v]; k < g.offsets[v + 1]; k++) {
+					int w = g.neighbors[k];
+					if (w == skip || seen[w] || (v == a && w == b) || (v == b && w == a))
+						continue;
+					seen[w] = true;
+					queue.add(w);
+				}
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * Whether the members other than without are connected among themselves
+	 */
+	private static boolean connected(CsrGraph g, int[] members, int without) {
+		HashSet<Integer> in = new HashSet<Integer>();
+		for (int v : members)
+			if (v != without)
+				in.add(v);
+		int start = members[0] == without ? members[1] : members[0];
+		HashSet<Integer> seen = new HashSet<Integer>();
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		queue.add(start);
+		seen.add(start);
+		while (!queue.isEmpty()) {
+			int v = queue.poll();
+			for (int k = g.offsets[v]; k < g.offsets[v + 1]; k++) {
+				int w = g.neighbors[k];
+				if (in.contains(w) && seen.add(w))
+					queue.add(w);
+			}
+		}
+		return seen.size() == in.size();
+	}
+
+	private static boolean together(Biconnectivity b, int v, int w) {
+		for (int c = 0; c < b.componentCount(); c++) {
+			boolean hasV = false, hasW = false;
+			for (int u : b.component(c)) {
+				hasV |= u == v;
+				hasW |= u == w;
+			}
+			if (hasV && hasW)
+				return true;
+		}
+		return false;
+	}
+
+	private static void fail(int graph, String problem) {
+		throw new IllegalStateException("graph " + graph + ": " + problem);
+	}
+}
@@ -1,5 +1,7 @@
 package bigint;
 
+import metrics.Metrics;
+
 /**
  * This class encapsulates a BigInteger, i.e. a positive or negative integer with 
  * any number of digits, which overcomes the computer storage length limitation of 
@@ -309,6 +311,8 @@ public class BigInteger {
 	 */
 	public static BigInteger multiply(BigInteger first, BigInteger second) {
 		
+		Metrics.Probe probe = Metrics.ENABLED ? Metrics.begin("bigint.multiply") : null;
+		long digits = 0;
 		DigitNode itrFirst = first.front, itrSecond = second.front;
 		DigitNode resultSum = null;
 		
@@ -352,6 +356,7 @@ public class BigInteger {
 			int carry = 0;
 			while (tempTop != null) {
 				int multiplication = tempTop.digit * itrSecond.digit;
+				digits++;
 				DigitNode resultDigit = new DigitNode((multiplication % 10) + carry, null);
 				carry = (multiplication) / 10;
 				itrResult.next = resultDigit;
@@ -383,6 +388,8 @@ public class BigInteger {
 		answer.negative = first.negative ^ second.negative;
 		answer.numDigits = sum.numDigits;
 		answer.front = resultSum;
+		if (probe != null)
+			probe.end(digits);
 		return answer;
 		
 	}
@@ -0,0 +1,308 @@
+package friends;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class speeds up repeated shortestChain queries on one graph, with a landmark index
+ * and a cache of recent chains.
+ *
+ * At construction, a BFS tree is computed from each of a few landmarks, the people with
+ * the most friends. For any two people s and t, the distances to a landmark L bound the
+ * length of their shortest chain from both sides:
+ * <pre>
+ *    |dist(L,s) - dist(L,t)|  &lt;=  length  &lt;=  dist(L,s) + dist(L,t)
+ * </pre>
+ * If a landmark reaches one of them but not the other, there is no chain at all. If the
+ * best bounds meet, the chain through that landmark is a shortest one, and is read off
+ * the two BFS trees without any search. Otherwise a BFS runs from s that skips everyone
+ * who could not be on a chain within the upper bound.
+ *
+ * The last chains found are kept in a least-recently-used cache. update swaps in a new
+ * graph, rebuilds the landmark trees and clears the cache, so no stale chain is served
+ * once it returns. Hit and miss counts and a latency histogram are kept for all queries.
+ * Landmark trees take 8 bytes per person per landmark.
+ *
+ */
+public class ChainIndex {
+
+	private static final int[] NO_CHAIN = new int[0];
+
+	/**
+	 * A graph with the BFS trees of its landmarks. Replaced as a whole on update.
+	 */
+	private static final class Landmarks {
+		final CsrGraph g;
+		final int[][] dist, parent;
+
+		Landmarks(CsrGraph g, int count) {
+			this.g = g;
+			count = Math.min(Math.max(count, 0), g.size());
+			int[] order = mostFriends(g, count);
+			dist = new int[count][];
+			parent = new int[count][];
+			int[] queue = new int[g.size()];
+			for (int i = 0; i < count; i++) {
+				int[] d = dist[i] = new int[g.size()];
+				int[] p = parent[i] = new int[g.size()];
+				Arrays.fill(d, -1);
+				int head = 0, tail = 0;
+				queue[tail++] = order[i];
+				d[order[i]] = 0;
+				p[order[i]] = -1;
+				while (head < tail) {
+					int v = queue[head++];
+					for (int k = g.offsets[v]; k < g.offsets[v + 1]; k++) {
+						int w = g.neighbors[k];
+						if (d[w] == -1) {
+							d[w] = d[v] + 1;
+							p[w] = v;
+							queue[tail++] = w;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * The count people with the most friends, most first, and by index among equals. A
+	 * min-heap of the best count so far, whose root is the weakest, takes O(n log count).
+	 */
+	private static int[] mostFriends(CsrGraph g, int count) {
+		int[] heap = new int[count];
+		int size = 0;
+		for (int v = 0; v < g.size(); v++) {
+			if (size < count) {
+				heap[size] = v;
+				siftUp(g, heap, size++);
+			}
+			else if (count > 0 && weaker(g, heap[0], v)) {
+				heap[0] = v;
+				siftDown(g, heap, 0, size);
+			}
+		}
+		// take the weakest off the end, so the strongest ends up first
+		for (int end = size - 1; end > 0; end--) {
+			int t = heap[0];
+			heap[0] = heap[end];
+			heap[end] = t;
+			siftDown(g, heap, 0, end);
+		}
+		return heap;
+	}
+
+	/*
+	 * Whether a is a worse landmark than b: fewer friends, or as many and a later index
+	 */
+	private static boolean weaker(CsrGraph g, int a, int b) {
+		int da = g.degree(a), db = g.degree(b);
+		return da < db || (da == db && a > b);
+	}
+
+	private static void siftUp(CsrGraph g, int[] heap, int i) {
+		while (i > 0 && weaker(g, heap[i], heap[(i - 1) / 2])) {
+			int p = (i - 1) / 2, t = heap[i];
+			heap[i] = heap[p];
+			heap[p] = t;
+			i = p;
+		}
+	}
+
+	private static void siftDown(CsrGraph g, int[] heap, int i, int size) {
+		while (true) {
+			int c = 2 * i + 1;
+			if (c >= size)
+				return;
+			if (c + 1 < size && weaker(g, heap[c + 1], heap[c]))
+				c++;
+			if (!weaker(g, heap[c], heap[i]))
+				return;
+			int t = heap[i];
+			heap[i] = heap[c];
+			heap[c] = t;
+			i = c;
+		}
+	}
+
+	private final int landmarkCount;
+	private volatile Landmarks landmarks;
+	private final LinkedHashMap<Long, int[]> cache;
+
+	private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+	private final AtomicLongArray latency = new AtomicLongArray(64);
+
+	/**
+	 * Builds the landmark index for a graph.
+	 *
+	 * @param g CSR graph to be queried
+	 * @param landmarkCount Number of landmarks
+	 * @param cacheSize Maximum number of chains kept in the cache
+	 */
+	public ChainIndex(CsrGraph g, int landmarkCount, int cacheSize) {
+		this.landmarkCount = landmarkCount;
+		landmarks = new Landmarks(g, landmarkCount);
+		cache = new LinkedHashMap<Long, int[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Replaces the graph, say after friendships were added or removed. Rebuilds the
+	 * landmark trees and drops every cached chain.
+	 *
+	 * @param g New CSR graph to be queried
+	 */
+	public void update(CsrGraph g) {
+		Landmarks next = new Landmarks(g, landmarkCount);
+		synchronized (cache) {
+			landmarks = next;
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Finds the shortest chain of people from p1 to p2.
+	 * Same as Friends.shortestChain.
+	 *
+	 * @param p1 Person with whom the chain originates
+	 * @param p2 Person at whom the chain terminates
+	 * @return The shortest chain from p1 to p2. Null if there is no
+	 *         path from p1 to p2
+	 */
+	public ArrayList<String> shortestChain(String p1, String p2) {
+		long start = System.nanoTime();
+		Landmarks lm = landmarks;
+		int source = lm.g.indexOf(p1), dest = lm.g.indexOf(p2);
+		if (source == -1 || dest == -1)
+			return null;
+
+		// chains are cached once per pair, from the smaller index to the larger
+		long key = source < dest ? ((long) source << 32) | dest : ((long) dest << 32) | source;
+		int[] chain;
+		synchronized (cache) {
+			chain = lm == landmarks ? cache.get(key) : null;
+		}
+		if (chain != null) {
+			hits.increment();
+		}
+		else {
+			misses.increment();
+			chain = search(lm, Math.min(source, dest), Math.max(source, dest));
+			synchronized (cache) {
+				if (lm == landmarks)
+					cache.put(key, chain);
+			}
+		}
+
+		ArrayList<String> result = null;
+		if (chain != NO_CHAIN) {
+			result = new ArrayList<String>(chain.length);
+			boolean reverse = chain[0] != source;
+			for (int i = 0; i < chain.length; i++)
+				result.add(lm.g.names[chain[reverse ? chain.length - 1 - i : i]]);
+		}
+
+		long nanos = System.nanoTime() - start;
+		latency.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(1, nanos)));
+		return result;
+	}
+
+	private static int[] search(Landmarks lm, int source, int dest) {
+		int lower = 0, upper = Integer.MAX_VALUE, best = -1;
+		for (int i = 0; i < lm.dist.length; i++) {
+			int ds = lm.dist[i][source], dt = lm.dist[i][dest];
+			if ((ds == -1) != (dt == -1))
+				return NO_CHAIN;
+			if (ds == -1)
+				continue;
+			lower = Math.max(lower, Math.abs(ds - dt));
+			if (ds + dt < upper) {
+				upper = ds + dt;
+				best = i;
+			}
+		}
+
+		if (best == -1) {
+			// no landmark in this part of the graph
+			ChainSearch search = lm.g.searches.take();
+			try {
+				int[] chain = search.search(lm.g, source, dest);
+				return chain == null ? NO_CHAIN : chain;
+			} finally {
+				lm.g.searches.give(search);
+			}
+		}
+		if (lower == upper)
+			return through(lm, best, source, dest, upper);
+		ChainSearch search = lm.g.searches.take();
+		try {
+			int[] chain = search.search(lm.g, source, dest, lm.dist, upper);
+			return chain == null ? through(lm, best, source, dest, upper) : chain;
+		} finally {
+			lm.g.searches.give(search);
+		}
+	}
+
+	/*
+	 * The chain from source up the BFS tree of landmark i, and back down to dest
+	 */
+	private static int[] through(Landmarks lm, int i, int source, int dest, int length) {
+		int[] p = lm.parent[i], d = lm.dist[i];
+		int[] chain = new int[length + 1];
+		for (int v = source, j = 0; j <= d[source]; v = p[v], j++)
+			chain[j] = v;
+		for (int v = dest, j = length; j > d[source]; v = p[v], j--)
+			chain[j] = v;
+		return chain;
+	}
+
+	/**
+	 * Number of queries answered from the cache
+	 *
+	 * @return Number of cache hits
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Number of queries that had to be searched
+	 *
+	 * @return Number of cache misses
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Fraction of queries answered from the cache
+	 *
+	 * @return Hit rate, between 0 and 1
+	 */
+	public double hitRate() {
+		long h = hits.sum(), total = h + misses.sum();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	/**
+	 * Query latency histogram. Bucket i counts the queries that took at least 2^i and
+	 * less than 2^(i+1) nanoseconds.
+	 *
+	 * @return Copy of the 64 bucket counts
+	 */
+	public long[] latencyHistogram() {
+		long[] counts = new long[latency.length()];
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = latency.get(i);
+		return counts;
+	}
+}
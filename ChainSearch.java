@@ -0,0 +1,426 @@
+package friends;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.WeakHashMap;
+
+/**
+ * Bidirectional breadth-first search for shortest chains, with all its working state in
+ * primitive arrays that are reused from one search to the next.
+ *
+ * Each search bumps an epoch instead of clearing the arrays: a person counts as visited
+ * from one side only if that side's stamp holds the current epoch. The arrays therefore
+ * cost O(n) once per searcher, and each search only pays for the people it actually visits.
+ *
+ * Searchers belong to a graph: each graph keeps a Pool of them, sized for it, which goes
+ * away with the graph. A searcher takes 16 bytes per person for the search from the
+ * source, and 12 more once it has searched from both ends.
+ *
+ */
+final class ChainSearch {
+
+	/**
+	 * Searchers for one graph, kept between searches. No more are kept than there are
+	 * processors, so a graph holds on to at most that many.
+	 */
+	static final class Pool {
+		private static final int IDLE = Runtime.getRuntime().availableProcessors();
+
+		private final int n;
+		private final ArrayList<ChainSearch> idle = new ArrayList<ChainSearch>();
+
+		Pool(int n) {
+			this.n = n;
+		}
+
+		/**
+		 * Returns an idle searcher, or a new one if there is none. It has to be given back.
+		 */
+		synchronized ChainSearch take() {
+			return idle.isEmpty() ? new ChainSearch(n) : idle.remove(idle.size() - 1);
+		}
+
+		synchronized void give(ChainSearch search) {
+			if (idle.size() < IDLE)
+				idle.add(search);
+		}
+	}
+
+	// pools of the plain Graphs searched, dropped with them
+	private static final WeakHashMap<Graph, Pool> POOLS = new WeakHashMap<Graph, Pool>();
+
+	private int[] seenFrom, parentFrom, frontFrom, next;
+	private int[] seenTo, parentTo, frontTo;
+	private int epoch = 0;
+
+	// friends of the person being expanded
+	private int[] adjacent = new int[16];
+
+	// number of people placed on either frontier by the last search
+	int visited;
+
+	private ChainSearch(int n) {
+		seenFrom = new int[n];
+		parentFrom = new int[n];
+		frontFrom = new int[n];
+		next = new int[n];
+	}
+
+	/**
+	 * Returns the pool of searchers of a Graph, which has no field to keep it in.
+	 */
+	static Pool pool(Graph g) {
+		synchronized (POOLS) {
+			Pool pool = POOLS.get(g);
+			if (pool == null) {
+				pool = new Pool(g.members.length);
+				POOLS.put(g, pool);
+			}
+			return pool;
+		}
+	}
+
+	/*
+	 * Allocates the state of the search from dest, the first time it is needed
+	 */
+	private void ensureTo() {
+		if (seenTo != null)
+			return;
+		int n = seenFrom.length;
+		seenTo = new int[n];
+		parentTo = new int[n];
+		frontTo = new int[n];
+	}
+
+	private void begin() {
+		if (++epoch == Integer.MAX_VALUE) {
+			Arrays.fill(seenFrom, 0);
+			if (seenTo != null)
+				Arrays.fill(seenTo, 0);
+			epoch = 1;
+		}
+		visited = 0;
+	}
+
+	/**
+	 * Friend lists of a Graph as an Adjacency, for searches over a Graph.
+	 */
+	static Adjacency adjacency(Graph g) {
+		return new Adjacency() {
+			public int size() {
+				return g.members.length;
+			}
+
+			public int degree(int v) {
+				return friends(v, new int[0]);
+			}
+
+			public int friends(int v, int[] buffer) {
+				int degree = 0;
+				for (Friend f = g.members[v].first; f != null; f = f.next) {
+					if (degree < buffer.length)
+						buffer[degree] = f.fnum;
+					degree++;
+				}
+				return degree;
+			}
+		};
+	}
+
+	/**
+	 * Shortest chain between two people of a CsrGraph, no longer than bound. People
+	 * through whom no chain could be that short are not explored: from w at depth d the
+	 * chain is at least d plus the landmark lower bound from w to dest, which is the
+	 * largest difference |dist[L][w] - dist[L][dest]| over all landmarks L.
+	 *
+	 * @param dist BFS distances from each landmark, -1 where unreachable
+	 * @param bound Length of some chain known to exist from source to dest
+	 * @return Indexes of the people on the chain from source to dest, or null if there is none
+	 */
+	int[] search(CsrGraph g, int source, int dest, int[][] dist, int bound) {
+		visited = 0;
+		if (source == dest)
+			return new int[] { source };
+
+		begin();
+		seenFrom[source] = epoch;
+		parentFrom[source] = -1;
+		frontFrom[0] = source;
+		int size = 1;
+
+		for (int depth = 1; size > 0 && depth <= bound; depth++) {
+			int nextSize = 0;
+			for (int i = 0; i < size; i++) {
+				int v = frontFrom[i];
+				for (int k = g.offsets[v]; k < g.offsets[v + 1]; k++) {
+					int w = g.neighbors[k];
+					if (seenFrom[w] == epoch)
+						continue;
+					seenFrom[w] = epoch;
+					parentFrom[w] = v;
+					if (w == dest)
+						return chainTo(w);
+					if (depth + lowerBound(dist, w, dest) <= bound)
+						next[nextSize++] = w;
+				}
+			}
+			visited += nextSize;
+			int[] t = frontFrom;
+			frontFrom = next;
+			next = t;
+			size = nextSize;
+		}
+		return null;
+	}
+
+	/**
+	 * One BFS from source that reaches every target it can. It stops as soon as all the
+	 * targets have been reached. Afterwards, chainTo gives the chain to any target.
+	 *
+	 * @param targets Indexes of the people to reach
+	 */
+	void reach(CsrGraph g, int source, int[] targets) {
+		ensureTo();
+		begin();
+		int remaining = 0;
+		for (int t : targets) {
+			if (seenTo[t] != epoch) {
+				seenTo[t] = epoch;
+				remaining++;
+			}
+		}
+		seenFrom[source] = epoch;
+		parentFrom[source] = -1;
+		if (seenTo[source] == epoch)
+			remaining--;
+		frontFrom[0] = source;
+		int size = 1;
+
+		while (size > 0 && remaining > 0) {
+			int nextSize = 0;
+			for (int i = 0; i < size; i++) {
+				int v = frontFrom[i];
+				for (int k = g.offsets[v]; k < g.offsets[v + 1]; k++) {
+					int w = g.neighbors[k];
+					if (seenFrom[w] == epoch)
+						continue;
+					seenFrom[w] = epoch;
+					parentFrom[w] = v;
+					next[nextSize++] = w;
+					if (seenTo[w] == epoch)
+						remaining--;
+				}
+			}
+			visited += nextSize;
+			int[] t = frontFrom;
+			frontFrom = next;
+			next = t;
+			size = nextSize;
+		}
+	}
+
+	/**
+	 * Chain from the source of the last reach, or one-ended search, to dest.
+	 *
+	 * @return Indexes of the people on the chain, or null if dest was not reached
+	 */
+	int[] chainTo(int dest) {
+		if (seenFrom[dest] != epoch)
+			return null;
+		int length = 0;
+		for (int v = dest; v != -1; v = parentFrom[v])
+			length++;
+		int[] chain = new int[length];
+		for (int v = dest; v != -1; v = parentFrom[v])
+			chain[--length] = v;
+		return chain;
+	}
+
+	/**
+	 * The k shortest chains from source to dest that visit no one twice, shortest first
+	 * (Yen). Each candidate branches off an earlier chain at some spur person: the part
+	 * up to the spur is kept, and the rest is the shortest chain from the spur that avoids
+	 * the people already on the kept part and the next step of every earlier chain that
+	 * shares that part.
+	 *
+	 * @return Up to k chains, each as indexes of people from source to dest
+	 */
+	ArrayList<int[]> kShortest(CsrGraph g, int source, int dest, int k) {
+		ArrayList<int[]> found = new ArrayList<int[]>();
+		int[] first = search(g, source, dest);
+		if (first == null || k < 1)
+			return found;
+		found.add(first);
+
+		PriorityQueue<int[]> candidates = new PriorityQueue<int[]>(11, (a, b) -> a.length - b.length);
+		HashSet<String> seen = new HashSet<String>();
+		seen.add(Arrays.toString(first));
+		HashSet<Long> avoidEdges = new HashSet<Long>();
+
+		while (found.size() < k) {
+			int[] last = found.get(found.size() - 1);
+			for (int i = 0; i + 1 < last.length; i++) {
+				avoidEdges.clear();
+				for (int[] chain : found) {
+					if (chain.length > i + 1 && Arrays.equals(chain, 0, i + 1, last, 0, i + 1))
+						avoidEdges.add(((long) chain[i] << 32) | chain[i + 1]);
+				}
+				int[] spur = searchAvoiding(g, last[i], dest, last, i, avoidEdges);
+				if (spur == null)
+					continue;
+				int[] chain = new int[i + spur.length];
+				System.arraycopy(last, 0, chain, 0, i);
+				System.arraycopy(spur, 0, chain, i, spur.length);
+				if (seen.add(Arrays.toString(chain)))
+					candidates.add(chain);
+			}
+			if (candidates.isEmpty())
+				break;
+			found.add(candidates.poll());
+		}
+		return found;
+	}
+
+	/*
+	 * Shortest chain from source to dest that does not go through avoid[0..avoidCount-1],
+	 * nor along any of the friendships in avoidEdges, taken in the direction (v << 32 | w).
+	 */
+	private int[] searchAvoiding(CsrGraph g, int source, int dest, int[] avoid, int avoidCount, HashSet<Long> avoidEdges) {
+		begin();
+		for (int i = 0; i < avoidCount; i++)
+			seenFrom[avoid[i]] = epoch;
+		seenFrom[source] = epoch;
+		parentFrom[source] = -1;
+		frontFrom[0] = source;
+		int size = 1;
+
+		while (size > 0) {
+			int nextSize = 0;
+			for (int i = 0; i < size; i++) {
+				int v = frontFrom[i];
+				for (int k = g.offsets[v]; k < g.offsets[v + 1]; k++) {
+					int w = g.neighbors[k];
+					if (seenFrom[w] == epoch || avoidEdges.contains(((long) v << 32) | w))
+						continue;
+					seenFrom[w] = epoch;
+					parentFrom[w] = v;
+					if (w == dest)
+						return chainTo(w);
+					next[nextSize++] = w;
+				}
+			}
+			visited += nextSize;
+			int[] t = frontFrom;
+			frontFrom = next;
+			next = t;
+			size = nextSize;
+		}
+		return null;
+	}
+
+	private static int lowerBound(int[][] dist, int v, int dest) {
+		int bound = 0;
+		for (int[] d : dist) {
+			if (d[v] >= 0 && d[dest] >= 0)
+				bound = Math.max(bound, Math.abs(d[v] - d[dest]));
+		}
+		return bound;
+	}
+
+	/**
+	 * Shortest chain between two people, found by growing the smaller of the two
+	 * frontiers by one level at a time until they meet.
+	 *
+	 * @return Indexes of the people on the chain from source to dest, or null if there is none
+	 */
+	int[] search(Adjacency g, int source, int dest) {
+		visited = 0;
+		if (source == dest)
+			return new int[] { source };
+
+		ensureTo();
+		begin();
+		seenFrom[source] = epoch;
+		parentFrom[source] = -1;
+		seenTo[dest] = epoch;
+		parentTo[dest] = -1;
+		frontFrom[0] = source;
+		frontTo[0] = dest;
+		int fromSize = 1, toSize = 1;
+
+		while (fromSize > 0 && toSize > 0) {
+			boolean forward = fromSize <= toSize;
+			int[] front = forward ? frontFrom : frontTo;
+			int size = forward ? fromSize : toSize;
+			int[] seen = forward ? seenFrom : seenTo, parent = forward ? parentFrom : parentTo;
+			int[] other = forward ? seenTo : seenFrom;
+
+			int nextSize = 0;
+			for (int i = 0; i < size; i++) {
+				int meet = expand(g, front[i], seen, parent, other, nextSize);
+				if (meet < -1)
+					return chain(-meet - 2);
+				nextSize = meet;
+			}
+			visited += nextSize;
+
+			// the old frontier becomes the scratch list for the next level
+			if (forward) {
+				frontFrom = next;
+				fromSize = nextSize;
+			}
+			else {
+				frontTo = next;
+				toSize = nextSize;
+			}
+			next = front;
+		}
+		return null;
+	}
+
+	/*
+	 * Appends the unseen friends of v to next. Returns the new size of next, or
+	 * (-w - 2) if friend w had already been seen from the other side.
+	 */
+	private int expand(Adjacency g, int v, int[] seen, int[] parent, int[] other, int nextSize) {
+		int degree = g.friends(v, adjacent);
+		if (degree > adjacent.length) {
+			adjacent = new int[Math.max(degree, 2 * adjacent.length)];
+			g.friends(v, adjacent);
+		}
+		for (int k = 0; k < degree; k++) {
+			int w = adjacent[k];
+			if (seen[w] == epoch)
+				continue;
+			seen[w] = epoch;
+			parent[w] = v;
+			if (other[w] == epoch)
+				return -w - 2;
+			next[nextSize++] = w;
+		}
+		return nextSize;
+	}
+
+	/*
+	 * Chain through meeting point w, which has been seen from both sides.
+	 */
+	private int[] chain(int w) {
+		int fromLength = 0, length;
+		for (int v = w; v != -1; v = parentFrom[v])
+			fromLength++;
+		length = fromLength;
+		for (int v = parentTo[w]; v != -1; v = parentTo[v])
+			length++;
+
+		int[] chain = new int[length];
+		int i = fromLength - 1;
+		for (int v = w; v != -1; v = parentFrom[v])
+			chain[i--] = v;
+		i = fromLength;
+		for (int v = parentTo[w]; v != -1; v = parentTo[v])
+			chain[i++] = v;
+		return chain;
+	}
+}
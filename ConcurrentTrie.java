@@ -0,0 +1,356 @@
+package trie;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class implements an updatable, compressed Trie that can be read by any number
+ * of threads while words are being inserted and deleted.
+ *
+ * Nodes are never modified once they are built. An insert or delete copies only the
+ * nodes on the path from the root to the changed word, and then swaps in the new root
+ * with a single compare-and-set. Readers therefore never block, and every read works
+ * on one consistent snapshot of the trie. Writers that lose the compare-and-set race
+ * simply redo their copy against the newer root.
+ *
+ */
+public class ConcurrentTrie {
+
+	/**
+	 * Immutable node of the trie. The label is the substring held by this node, and the
+	 * children are kept sorted by the first character of their labels.
+	 */
+	private static final class Node {
+		final String label;
+		final Node[] children;
+		final boolean word;
+
+		Node(String label, Node[] children, boolean word) {
+			this.label = label;
+			this.children = children;
+			this.word = word;
+		}
+	}
+
+	private static final Node[] NONE = new Node[0];
+
+	/**
+	 * An immutable view of the trie at one point in time.
+	 */
+	public static final class Snapshot {
+		private final Node root;
+		private final int size;
+
+		private Snapshot(Node root, int size) {
+			this.root = root;
+			this.size = size;
+		}
+
+		/**
+		 * Number of words in this snapshot
+		 *
+		 * @return Number of words
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Tells whether a word is in this snapshot.
+		 *
+		 * @param word Word to look for
+		 * @return True if the word is present, false otherwise
+		 */
+		public boolean contains(String word) {
+			Node node = root;
+			int pos = 0;
+			while (pos < word.length()) {
+				Node child = child(node, word.charAt(pos));
+				if (child == null || !word.startsWith(child.label, pos))
+					return false;
+				pos += child.label.length();
+				node = child;
+			}
+			return node.word;
+		}
+
+		/**
+		 * Returns all the words in this snapshot that start with a prefix.
+		 *
+		 * @param prefix Prefix to be completed with words in trie
+		 * @return List of words that start with the prefix, in sorted order.
+		 *         If there is no word in the trie that has this prefix, null is returned.
+		 */
+		public ArrayList<String> completionList(String prefix) {
+			if (prefix == null || prefix.length() < 1)
+				return null;
+
+			Node node = root;
+			StringBuilder path = new StringBuilder();
+			int pos = 0;
+			while (pos < prefix.length()) {
+				Node child = child(node, prefix.charAt(pos));
+				if (child == null)
+					return null;
+				int m = common(child.label, prefix, pos);
+				if (pos + m < prefix.length() && m < child.label.length())
+					return null;
+				path.append(child.label);
+				pos += child.label.length();
+				node = child;
+			}
+
+			ArrayList<String> words = new ArrayList<String>();
+			collect(node, path, words);
+			return words.isEmpty() ? null : words;
+		}
+	}
+
+	private final AtomicReference<Snapshot> current;
+
+	/**
+	 * Initializes an empty trie.
+	 */
+	public ConcurrentTrie() {
+		current = new AtomicReference<Snapshot>(new Snapshot(new Node("", NONE, false), 0));
+	}
+
+	/**
+	 * Builds a trie holding all words of the input array.
+	 *
+	 * @param allWords Input array of words (lowercase) to be inserted
+	 * @return Trie with all the words inserted
+	 */
+	public static ConcurrentTrie build(String[] allWords) {
+		ConcurrentTrie trie = new ConcurrentTrie();
+		for (String word : allWords)
+			trie.insert(word);
+		return trie;
+	}
+
+	/**
+	 * Returns the current snapshot. Queries against the returned snapshot are not
+	 * affected by later inserts or deletes.
+	 *
+	 * @return Current snapshot of the trie
+	 */
+	public Snapshot snapshot() {
+		return current.get();
+	}
+
+	/**
+	 * Tells whether a word is in the trie.
+	 *
+	 * @param word Word to look for
+	 * @return True if the word is present, false otherwise
+	 */
+	public boolean contains(String word) {
+		return current.get().contains(word);
+	}
+
+	/**
+	 * Returns all the words in the trie that start with a prefix.
+	 *
+	 * @param prefix Prefix to be completed with words in trie
+	 * @return List of words that start with the prefix, in sorted order.
+	 *         If there is no word in the trie that has this prefix, null is returned.
+	 */
+	public ArrayList<String> completionList(String prefix) {
+		return current.get().completionList(prefix);
+	}
+
+	/**
+	 * Number of words in the trie
+	 *
+	 * @return Number of words
+	 */
+	public int size() {
+		return current.get().size;
+	}
+
+	/**
+	 * Inserts a word into the trie.
+	 *
+	 * @param word Word to be inserted, must have at least one character
+	 * @return True if the word was added, false if it was already present
+	 * @throws IllegalArgumentException If the word is null or empty
+	 */
+	public boolean insert(String word)
+	throws IllegalArgumentException {
+		if (word == null || word.length() < 1)
+			throw new IllegalArgumentException();
+
+		while (true) {
+			Snapshot snap = current.get();
+			Node root = insert(snap.root, word, 0);
+			if (root == snap.root)
+				return false;
+			if (current.compareAndSet(snap, new Snapshot(root, snap.size + 1)))
+				return true;
+		}
+	}
+
+	/**
+	 * Deletes a word from the trie.
+	 *
+	 * @param word Word to be deleted
+	 * @return True if the word was removed, false if it was not present
+	 */
+	public boolean delete(String word) {
+		if (word == null || word.length() < 1)
+			return false;
+
+		while (true) {
+			Snapshot snap = current.get();
+			Node root = delete(snap.root, word, 0);
+			if (root == snap.root)
+				return false;
+			if (current.compareAndSet(snap, new Snapshot(root, snap.size - 1)))
+				return true;
+		}
+	}
+
+	/*
+	 * Returns a copy of node with word[pos..] inserted below it, or node itself
+	 * if the word is already there.
+	 */
+	private static Node insert(Node node, String word, int pos) {
+		int i = find(node.children, word.charAt(pos));
+		if (i < 0) {
+			Node leaf = new Node(word.substring(pos), NONE, true);
+			return new Node(node.label, with(node.children, -i - 1, leaf), node.word);
+		}
+
+		Node child = node.children[i];
+		int m = common(child.label, word, pos);
+		Node replaced;
+		if (m == child.label.length()) {
+			if (pos + m == word.length()) {
+				if (child.word)
+					return node;
+				replaced = new Node(child.label, child.children, true);
+			}
+			else {
+				replaced = insert(child, word, pos + m);
+				if (replaced == child)
+					return node;
+			}
+		}
+		else {
+			// split the child where the word leaves its label
+			Node tail = new Node(child.label.substring(m), child.children, child.word);
+			if (pos + m == word.length()) {
+				replaced = new Node(child.label.substring(0, m), new Node[] { tail }, true);
+			}
+			else {
+				Node leaf = new Node(word.substring(pos + m), NONE, true);
+				Node[] pair = leaf.label.charAt(0) < tail.label.charAt(0) ? new Node[] { leaf, tail } : new Node[] { tail, leaf };
+				replaced = new Node(child.label.substring(0, m), pair, false);
+			}
+		}
+
+		Node[] children = node.children.clone();
+		children[i] = replaced;
+		return new Node(node.label, children, node.word);
+	}
+
+	/*
+	 * Returns a copy of node with word[pos..] removed from below it, node itself if
+	 * the word is not there, or null if node is left with nothing to hold.
+	 */
+	private static Node delete(Node node, String word, int pos) {
+		if (pos == word.length()) {
+			if (!node.word)
+				return node;
+			return compact(new Node(node.label, node.children, false));
+		}
+
+		int i = find(node.children, word.charAt(pos));
+		if (i < 0)
+			return node;
+		Node child = node.children[i];
+		if (!word.startsWith(child.label, pos))
+			return node;
+
+		Node replaced = delete(child, word, pos + child.label.length());
+		if (replaced == child)
+			return node;
+
+		Node[] children;
+		if (replaced == null) {
+			children = new Node[node.children.length - 1];
+			System.arraycopy(node.children, 0, children, 0, i);
+			System.arraycopy(node.children, i + 1, children, i, children.length - i);
+		}
+		else {
+			children = node.children.clone();
+			children[i] = replaced;
+		}
+
+		Node copy = new Node(node.label, children, node.word);
+		return pos == 0 ? copy : compact(copy);
+	}
+
+	/*
+	 * Drops a node that holds no word and has no children, and merges a node that holds
+	 * no word into its only child.
+	 */
+	private static Node compact(Node node) {
+		if (node.word)
+			return node;
+		if (node.children.length == 0)
+			return null;
+		if (node.children.length == 1) {
+			Node only = node.children[0];
+			return new Node(node.label + only.label, only.children, only.word);
+		}
+		return node;
+	}
+
+	private static Node child(Node node, char c) {
+		int i = find(node.children, c);
+		return i < 0 ? null : node.children[i];
+	}
+
+	/*
+	 * Binary search on first characters. Returns the index of the matching child, or
+	 * (-(insertion point) - 1) if there is none.
+	 */
+	private static int find(Node[] children, char c) {
+		int lo = 0, hi = children.length - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			char m = children[mid].label.charAt(0);
+			if (m < c) lo = mid + 1;
+			else if (m > c) hi = mid - 1;
+			else return mid;
+		}
+		return -(lo + 1);
+	}
+
+	private static Node[] with(Node[] children, int at, Node node) {
+		Node[] result = new Node[children.length + 1];
+		System.arraycopy(children, 0, result, 0, at);
+		result[at] = node;
+		System.arraycopy(children, at, result, at + 1, children.length - at);
+		return result;
+	}
+
+	private static int common(String label, String word, int pos) {
+		int m = 0;
+		while (m < label.length() && pos + m < word.length() && label.charAt(m) == word.charAt(pos + m))
+			m++;
+		return m;
+	}
+
+	private static void collect(Node node, StringBuilder path, ArrayList<String> words) {
+		if (node.word)
+			words.add(path.toString());
+		for (Node child : node.children) {
+			int length = path.length();
+			path.append(child.label);
+			collect(child, path, words);
+			path.setLength(length);
+		}
+	}
+}
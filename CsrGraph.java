@@ -0,0 +1,188 @@
+package friends;
+
+import java.util.HashMap;
+
+/**
+ * This class is an immutable, compressed sparse row (CSR) form of a Graph.
+ *
+ * The friends of person v are neighbors[offsets[v]] .. neighbors[offsets[v+1]-1], in the
+ * same order as in v's Friend list. Where a Graph spends one Friend object per edge
+ * direction, this spends one int, and the friends of a person sit next to each other
+ * in memory, so traversals run over flat arrays instead of chasing pointers.
+ *
+ * Schools are interned: school[v] is an index into schools, or -1 if v is not a student.
+ *
+ */
+public class CsrGraph implements Adjacency {
+
+	final int[] offsets;
+	final int[] neighbors;
+	final String[] names;
+	final int[] school;
+	final String[] schools;
+	final HashMap<String, Integer> index;
+
+	// searchers for shortest chains, sized for this graph
+	final ChainSearch.Pool searches;
+
+	/*
+	 * Wraps ready-made arrays, which must not be changed afterwards.
+	 */
+	CsrGraph(int[] offsets, int[] neighbors, String[] names, int[] school, String[] schools) {
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+		this.names = names;
+		this.school = school;
+		this.schools = schools;
+		index = new HashMap<String, Integer>(names.length * 2);
+		for (int v = 0; v < names.length; v++)
+			index.put(names[v], v);
+		searches = new ChainSearch.Pool(names.length);
+	}
+
+	/**
+	 * Builds the CSR form of a graph. The graph is not modified, and later changes to it
+	 * are not seen by the CSR form.
+	 *
+	 * @param g Graph to convert
+	 */
+	public CsrGraph(Graph g) {
+		int n = g.members.length;
+		offsets = new int[n + 1];
+		for (int v = 0; v < n; v++) {
+			int degree = 0;
+			for (Friend f = g.members[v].first; f != null; f = f.next)
+				degree++;
+			offsets[v + 1] = offsets[v] + degree;
+		}
+
+		neighbors = new int[offsets[n]];
+		names = new String[n];
+		school = new int[n];
+		index = new HashMap<String, Integer>(n * 2);
+		HashMap<String, Integer> schoolIds = new HashMap<String, Integer>();
+		for (int v = 0; v < n; v++) {
+			Person p = g.members[v];
+			names[v] = p.name;
+			index.put(p.name, v);
+			school[v] = -1;
+			if (p.student) {
+				Integer id = schoolIds.get(p.school);
+				if (id == null) {
+					id = schoolIds.size();
+					schoolIds.put(p.school, id);
+				}
+				school[v] = id;
+			}
+			int k = offsets[v];
+			for (Friend f = p.first; f != null; f = f.next)
+				neighbors[k++] = f.fnum;
+		}
+
+		schools = new String[schoolIds.size()];
+		for (String s : schoolIds.keySet())
+			schools[schoolIds.get(s)] = s;
+		searches = new ChainSearch.Pool(n);
+	}
+
+	/**
+	 * Number of people in the graph
+	 *
+	 * @return Number of people
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * Number of friendships in the graph, each counted once
+	 *
+	 * @return Number of friendships
+	 */
+	public int edgeCount() {
+		return neighbors.length / 2;
+	}
+
+	/**
+	 * Number of friends of a person
+	 *
+	 * @param v Index of person
+	 * @return Number of friends
+	 */
+	public int degree(int v) {
+		return offsets[v + 1] - offsets[v];
+	}
+
+	/**
+	 * Copies the indexes of the friends of a person into a buffer, as many as fit.
+	 *
+	 * @param v Index of person
+	 * @param buffer Buffer for the indexes of the friends
+	 * @return Number of friends, more than were copied if the buffer is too short
+	 */
+	public int friends(int v, int[] buffer) {
+		int degree = offsets[v + 1] - offsets[v];
+		System.arraycopy(neighbors, offsets[v], buffer, 0, Math.min(degree, buffer.length));
+		return degree;
+	}
+
+	/**
+	 * Name of a person
+	 *
+	 * @param v Index of person
+	 * @return Name
+	 */
+	public String name(int v) {
+		return names[v];
+	}
+
+	/**
+	 * Index of a person
+	 *
+	 * @param name Name of person
+	 * @return Index of person, or -1 if there is no one by that name
+	 */
+	public int indexOf(String name) {
+		Integer v = index.get(name);
+		return v == null ? -1 : v;
+	}
+
+	/**
+	 * Index of a school
+	 *
+	 * @param name Name of school
+	 * @return Index of school, or -1 if no student goes there
+	 */
+	public int schoolOf(String name) {
+		for (int s = 0; s < schools.length; s++)
+			if (schools[s].equals(name))
+				return s;
+		return -1;
+	}
+
+	/**
+	 * Approximate number of bytes taken by the adjacency of this graph: the offsets
+	 * and neighbors arrays.
+	 *
+	 * @return Approximate size in bytes
+	 */
+	public long adjacencyBytes() {
+		return 16 + 4L * offsets.length + 16 + 4L * neighbors.length;
+	}
+
+	/**
+	 * Approximate number of bytes taken by the adjacency of a Graph: one Friend object
+	 * (12 byte header, int, reference, padded to 24 bytes with compressed references)
+	 * per edge direction, plus the first reference of each Person.
+	 *
+	 * @param g Graph
+	 * @return Approximate size in bytes
+	 */
+	public static long adjacencyBytes(Graph g) {
+		long friends = 0;
+		for (Person p : g.members)
+			for (Friend f = p.first; f != null; f = f.next)
+				friends++;
+		return 24L * friends + 4L * g.members.length;
+	}
+}
@@ -0,0 +1,85 @@
+package friends;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.Scanner;
+
+/**
+ * This class is a driver that compares a Graph with its CsrGraph form on a random graph:
+ * the approximate memory taken by the adjacency of each, and the time shortestChain takes
+ * on each for the same random pairs of people.
+ *
+ * Usage: java friends.CsrGraphBenchmark [people [friendships [queries [seed]]]]
+ *
+ */
+public class CsrGraphBenchmark {
+
+	/**
+	 * Builds a random graph in the text format read by Graph: people named p0, p1, ...,
+	 * half of them students spread over ten schools, and friendships between random
+	 * pairs of different people.
+	 *
+	 * @param people Number of people
+	 * @param friendships Number of friendships, duplicates included
+	 * @param seed Seed of the random choices
+	 * @return Graph
+	 */
+	static Graph randomGraph(int people, int friendships, long seed) {
+		Random random = new Random(seed);
+		StringBuilder text = new StringBuilder();
+		text.append(people).append('\n');
+		for (int i = 0; i < people; i++) {
+			text.append('p').append(i);
+			if (random.nextBoolean())
+				text.append("|y|school").append(random.nextInt(10)).append('\n');
+			else
+				text.append("|n\n");
+		}
+		for (int e = 0; e < friendships && people > 1; e++) {
+			int a = random.nextInt(people), b = random.nextInt(people - 1);
+			if (b >= a)
+				b++;
+			text.append('p').append(a).append("|p").append(b).append('\n');
+		}
+		return new Graph(new Scanner(text.toString()));
+	}
+
+	public static void main(String[] args) {
+		int people = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int friendships = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		int queries = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+		Graph g = randomGraph(people, friendships, seed);
+		CsrGraph csr = new CsrGraph(g);
+		System.out.printf("%d people, %d friendships%n", people, friendships);
+		System.out.printf("adjacency  Graph %,d bytes  CsrGraph %,d bytes%n",
+				CsrGraph.adjacencyBytes(g), csr.adjacencyBytes());
+
+		Random random = new Random(seed + 1);
+		String[] from = new String[queries], to = new String[queries];
+		for (int q = 0; q < queries; q++) {
+			from[q] = "p" + random.nextInt(people);
+			to[q] = "p" + random.nextInt(people);
+		}
+
+		// the first round warms up both searches, the second one is timed
+		for (int round = 0; round < 2; round++) {
+			long graphNanos = 0, csrNanos = 0;
+			for (int q = 0; q < queries; q++) {
+				long start = System.nanoTime();
+				ArrayList<String> a = Friends.shortestChain(g, from[q], to[q]);
+				long middle = System.nanoTime();
+				ArrayList<String> b = Friends.shortestChain(csr, from[q], to[q]);
+				long end = System.nanoTime();
+				graphNanos += middle - start;
+				csrNanos += end - middle;
+				if ((a == null) != (b == null) || (a != null && a.size() != b.size()))
+					throw new IllegalStateException("Chains differ from " + from[q] + " to " + to[q]);
+			}
+			if (round == 1)
+				System.out.printf("shortestChain  Graph %.3f ms  CsrGraph %.3f ms  (mean of %d)%n",
+						graphNanos / 1e6 / queries, csrNanos / 1e6 / queries, queries);
+		}
+	}
+}
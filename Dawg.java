@@ -0,0 +1,271 @@
+package trie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * This class implements a minimal directed acyclic word graph (DAWG), which shares
+ * suffixes as well as prefixes, so a vocabulary of inflected words takes a fraction of
+ * the nodes of a Trie.
+ *
+ * The graph is built directly in minimal form from sorted words (Daciuk et al.): only
+ * the states on the path of the last word added are still open, and each state is
+ * either merged with an equivalent one from the register or registered itself as soon
+ * as it is closed.
+ *
+ * Because states are shared, a state cannot hold a word index the way a TrieNode does.
+ * Instead, as in a finite state transducer, every transition carries an output: the number
+ * of words that sort before any word through it. Summing the outputs along a word's path
+ * gives the word's rank in sorted order, and a rank table maps that back to the index of
+ * the word in allWords.
+ *
+ */
+public class Dawg {
+
+	/**
+	 * A state of the graph. Transitions are kept in label order.
+	 */
+	private static final class State {
+		char[] labels = new char[0];
+		State[] next = new State[0];
+		int[] out;
+		boolean fin;
+		int count;
+		int hash;
+
+		State last() {
+			return next.length == 0 ? null : next[next.length - 1];
+		}
+
+		void add(char c, State s) {
+			labels = Arrays.copyOf(labels, labels.length + 1);
+			next = Arrays.copyOf(next, next.length + 1);
+			labels[labels.length - 1] = c;
+			next[next.length - 1] = s;
+		}
+
+		/*
+		 * Called once all the targets are final: fixes the hash, word count and outputs.
+		 */
+		void freeze() {
+			int h = fin ? 1 : 0;
+			out = new int[next.length];
+			count = fin ? 1 : 0;
+			for (int k = 0; k < next.length; k++) {
+				h = 31 * (31 * h + labels[k]) + System.identityHashCode(next[k]);
+				out[k] = count;
+				count += next[k].count;
+			}
+			hash = h;
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof State))
+				return false;
+			State s = (State) o;
+			if (fin != s.fin || !Arrays.equals(labels, s.labels))
+				return false;
+			for (int k = 0; k < next.length; k++)
+				if (next[k] != s.next[k])
+					return false;
+			return true;
+		}
+	}
+
+	private final State root = new State();
+	private final int[] ranks;
+	private int states;
+
+	// only needed while building
+	private HashMap<State, State> register = new HashMap<State, State>();
+	private String previous = "";
+
+	private Dawg(int[] ranks) {
+		this.ranks = ranks;
+	}
+
+	/**
+	 * Builds a minimal word graph for all the words in the input array.
+	 * The words do not have to be sorted, and duplicates are allowed: a word that occurs
+	 * more than once maps back to its first index.
+	 *
+	 * @param allWords Input array of words (lowercase)
+	 * @return Word graph that maps each word to its index in allWords
+	 */
+	public static Dawg build(String[] allWords) {
+		Integer[] order = new Integer[allWords.length];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int c = allWords[a].compareTo(allWords[b]);
+				return c != 0 ? c : a - b;
+			}
+		});
+
+		int[] ranks = new int[order.length];
+		int count = 0;
+		for (int i = 0; i < order.length; i++) {
+			if (i > 0 && allWords[order[i]].equals(allWords[order[i - 1]]))
+				continue;
+			ranks[count++] = order[i];
+		}
+
+		Dawg dawg = new Dawg(Arrays.copyOf(ranks, count));
+		for (int i = 0; i < count; i++)
+			dawg.add(allWords[dawg.ranks[i]]);
+		dawg.finish();
+		return dawg;
+	}
+
+	/**
+	 * Minimises a trie built by Trie.buildTrie: builds the word graph for the words held
+	 * by its leaf nodes.
+	 *
+	 * @param root Root of trie
+	 * @param allWords Array of words that have been inserted into the trie
+	 * @return Word graph that maps each word to its index in allWords
+	 */
+	public static Dawg fromTrie(TrieNode root, String[] allWords) {
+		ArrayList<TrieNode> leaves = new ArrayList<TrieNode>();
+		if (root != null && root.firstChild != null)
+			Trie.leafs(root.firstChild, leaves);
+		String[] words = new String[allWords.length];
+		for (TrieNode leaf : leaves)
+			words[leaf.substr.wordIndex] = allWords[leaf.substr.wordIndex];
+
+		int n = 0;
+		int[] index = new int[leaves.size()];
+		String[] present = new String[leaves.size()];
+		for (int i = 0; i < words.length; i++) {
+			if (words[i] != null) {
+				index[n] = i;
+				present[n++] = words[i];
+			}
+		}
+		Dawg dawg = build(present);
+		for (int r = 0; r < dawg.ranks.length; r++)
+			dawg.ranks[r] = index[dawg.ranks[r]];
+		return dawg;
+	}
+
+	/**
+	 * Number of words in the graph
+	 *
+	 * @return Number of words
+	 */
+	public int wordCount() {
+		return ranks.length;
+	}
+
+	/**
+	 * Number of states in the graph, including the root
+	 *
+	 * @return Number of states
+	 */
+	public int stateCount() {
+		return states + 1;
+	}
+
+	/**
+	 * Looks up a word.
+	 *
+	 * @param word Word to look for
+	 * @return Index of the word in allWords, or -1 if the word is not in the graph
+	 */
+	public int lookup(String word) {
+		State s = root;
+		int rank = 0;
+		for (int i = 0; i < word.length(); i++) {
+			int k = Arrays.binarySearch(s.labels, word.charAt(i));
+			if (k < 0)
+				return -1;
+			rank += s.out[k];
+			s = s.next[k];
+		}
+		return s.fin ? ranks[rank] : -1;
+	}
+
+	/**
+	 * Given a prefix, returns the indexes of all the words in the graph that start with it.
+	 *
+	 * @param prefix Prefix to be completed with words in the graph
+	 * @return List of indexes into allWords of all words that start with the prefix, in
+	 *         sorted word order. If there is no word that has this prefix, null is returned.
+	 */
+	public ArrayList<Integer> completionList(String prefix) {
+		if (prefix == null || prefix.length() < 1)
+			return null;
+
+		State s = root;
+		int rank = 0;
+		for (int i = 0; i < prefix.length(); i++) {
+			int k = Arrays.binarySearch(s.labels, prefix.charAt(i));
+			if (k < 0)
+				return null;
+			rank += s.out[k];
+			s = s.next[k];
+		}
+
+		// the words below s have consecutive ranks
+		ArrayList<Integer> words = new ArrayList<Integer>(s.count);
+		for (int r = rank; r < rank + s.count; r++)
+			words.add(ranks[r]);
+		return words.isEmpty() ? null : words;
+	}
+
+	/*
+	 * Adds the next word in sorted order.
+	 */
+	private void add(String word) {
+		if (word.compareTo(previous) <= 0)
+			throw new IllegalArgumentException("Words out of order at " + word);
+
+		int l = 0;
+		State s = root;
+		while (l < word.length() && l < previous.length() && word.charAt(l) == previous.charAt(l)) {
+			s = s.last();
+			l++;
+		}
+		if (s.next.length > 0)
+			replaceOrRegister(s);
+		for (; l < word.length(); l++) {
+			State t = new State();
+			s.add(word.charAt(l), t);
+			s = t;
+		}
+		s.fin = true;
+		previous = word;
+	}
+
+	private void finish() {
+		if (root.next.length > 0)
+			replaceOrRegister(root);
+		root.freeze();
+		states = register.size();
+		register = null;
+		previous = null;
+	}
+
+	/*
+	 * Closes the last child of s, and everything below it: replaces it with an equivalent
+	 * registered state if there is one, or registers it otherwise.
+	 */
+	private void replaceOrRegister(State s) {
+		State child = s.last();
+		if (child.next.length > 0)
+			replaceOrRegister(child);
+		child.freeze();
+		State same = register.get(child);
+		if (same != null)
+			s.next[s.next.length - 1] = same;
+		else
+			register.put(child, child);
+	}
+}
@@ -0,0 +1,273 @@
+package friends;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * This class keeps the components and cliques of a Graph up to date as friendships are
+ * added and removed, instead of recomputing them from scratch.
+ *
+ * Components and cliques are each kept in a union-find forest (union by size, path
+ * compression), so adding a friendship costs close to O(1), and so do the "same
+ * component?" and "same clique?" questions. The members of each set are also kept on a
+ * circular list, so listing a component costs only its size.
+ *
+ * Union-find cannot split sets, so the friendships that actually merged two sets (the
+ * spanning forest) are remembered. Removing any other friendship cannot disconnect
+ * anyone and costs only the unlinking from the Graph. Removing a spanning friendship
+ * marks the forest as stale, and it is rebuilt from the Graph at the next question.
+ *
+ * All changes are made to the Graph itself, so cliques and connectors see them as well.
+ * The set of people is fixed. This class is not synchronized.
+ *
+ */
+public class DynamicConnectivity {
+
+	/**
+	 * Union-find forest over all people, with a circular member list per set.
+	 */
+	private static final class Forest {
+		final int[] parent, size, next;
+		final HashSet<Long> spanning = new HashSet<Long>();
+		boolean stale = false;
+
+		Forest(int n) {
+			parent = new int[n];
+			size = new int[n];
+			next = new int[n];
+			reset();
+		}
+
+		void reset() {
+			for (int v = 0; v < parent.length; v++) {
+				parent[v] = next[v] = v;
+				size[v] = 1;
+			}
+			spanning.clear();
+			stale = false;
+		}
+
+		int find(int v) {
+			int r = v;
+			while (parent[r] != r)
+				r = parent[r];
+			while (parent[v] != r) {
+				int p = parent[v];
+				parent[v] = r;
+				v = p;
+			}
+			return r;
+		}
+
+		void union(int a, int b) {
+			int ra = find(a), rb = find(b);
+			if (ra == rb)
+				return;
+			if (size[ra] < size[rb]) {
+				int t = ra;
+				ra = rb;
+				rb = t;
+			}
+			parent[rb] = ra;
+			size[ra] += size[rb];
+			// splice the two circular member lists together
+			int t = next[ra];
+			next[ra] = next[rb];
+			next[rb] = t;
+			spanning.add(key(a, b));
+		}
+	}
+
+	private final Graph g;
+	private final Forest components, cliques;
+
+	// the Friend lists of g, for the changes written once in FriendLists
+	private final FriendLists<Friend> lists = new FriendLists<Friend>() {
+		public int indexOf(String name) {
+			Integer v = g.map.get(name);
+			return v == null ? -1 : v;
+		}
+
+		public Friend first(int v) {
+			return g.members[v].first;
+		}
+
+		public void setFirst(int v, Friend node) {
+			g.members[v].first = node;
+		}
+
+		public Friend next(Friend node) {
+			return node.next;
+		}
+
+		public void setNext(Friend node, Friend next) {
+			node.next = next;
+		}
+
+		public int fnum(Friend node) {
+			return node.fnum;
+		}
+
+		public Friend newNode(int fnum, Friend next) {
+			return new Friend(fnum, next);
+		}
+	};
+
+	/**
+	 * Builds the components and cliques of a graph.
+	 *
+	 * @param g Graph to keep track of
+	 */
+	public DynamicConnectivity(Graph g) {
+		this.g = g;
+		components = new Forest(g.members.length);
+		cliques = new Forest(g.members.length);
+		rebuild(components, false);
+		rebuild(cliques, true);
+	}
+
+	private static long key(int a, int b) {
+		return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+	}
+
+	/*
+	 * True if a and b are students of the same school
+	 */
+	private boolean sameSchool(int a, int b) {
+		Person p = g.members[a], q = g.members[b];
+		return p.student && q.student && p.school.equals(q.school);
+	}
+
+	private void rebuild(Forest forest, boolean schoolOnly) {
+		forest.reset();
+		for (int v = 0; v < g.members.length; v++) {
+			for (Friend f = g.members[v].first; f != null; f = f.next) {
+				if (f.fnum > v && (!schoolOnly || sameSchool(v, f.fnum)))
+					forest.union(v, f.fnum);
+			}
+		}
+	}
+
+	private Forest components() {
+		if (components.stale)
+			rebuild(components, false);
+		return components;
+	}
+
+	private Forest cliques() {
+		if (cliques.stale)
+			rebuild(cliques, true);
+		return cliques;
+	}
+
+	/**
+	 * Adds a friendship between two people.
+	 *
+	 * @param p1 Name of one person
+	 * @param p2 Name of other person
+	 * @return True if the friendship was added, false if they were already friends
+	 * @throws IllegalArgumentException If either person is not in the graph, or p1 is p2
+	 */
+	public boolean addFriendship(String p1, String p2)
+	throws IllegalArgumentException {
+		int a = lists.person(p1), b = lists.person(p2);
+		if (!lists.addFriendship(a, b))
+			return false;
+		if (!components.stale)
+			components.union(a, b);
+		if (!cliques.stale && sameSchool(a, b))
+			cliques.union(a, b);
+		return true;
+	}
+
+	/**
+	 * Removes a friendship between two people.
+	 *
+	 * @param p1 Name of one person
+	 * @param p2 Name of other person
+	 * @return True if the friendship was removed, false if they were not friends
+	 * @throws IllegalArgumentException If either person is not in the graph
+	 */
+	public boolean removeFriendship(String p1, String p2)
+	throws IllegalArgumentException {
+		int a = lists.person(p1), b = lists.person(p2);
+		if (!lists.removeFriendship(a, b))
+			return false;
+
+		long key = key(a, b);
+		if (components.spanning.contains(key))
+			components.stale = true;
+		if (cliques.spanning.contains(key))
+			cliques.stale = true;
+		return true;
+	}
+
+	/**
+	 * Tells whether there is a chain of friends between two people.
+	 *
+	 * @param p1 Name of one person
+	 * @param p2 Name of other person
+	 * @return True if p1 and p2 are in the same component
+	 * @throws IllegalArgumentException If either person is not in the graph
+	 */
+	public boolean sameComponent(String p1, String p2)
+	throws IllegalArgumentException {
+		Forest forest = components();
+		return forest.find(lists.person(p1)) == forest.find(lists.person(p2));
+	}
+
+	/**
+	 * Tells whether two people are in the same clique, i.e. are students of the same
+	 * school with a chain of friends between them through students of that school.
+	 *
+	 * @param p1 Name of one person
+	 * @param p2 Name of other person
+	 * @return True if p1 and p2 are in the same clique
+	 * @throws IllegalArgumentException If either person is not in the graph
+	 */
+	public boolean sameClique(String p1, String p2)
+	throws IllegalArgumentException {
+		int a = lists.person(p1), b = lists.person(p2);
+		if (!sameSchool(a, b))
+			return false;
+		Forest forest = cliques();
+		return forest.find(a) == forest.find(b);
+	}
+
+	/**
+	 * Returns everyone in the same component as a person, including the person.
+	 *
+	 * @param p Name of person
+	 * @return Names of everyone in p's component
+	 * @throws IllegalArgumentException If the person is not in the graph
+	 */
+	public ArrayList<String> component(String p)
+	throws IllegalArgumentException {
+		return members(components(), lists.person(p));
+	}
+
+	/**
+	 * Returns everyone in the same clique as a student, including the student.
+	 *
+	 * @param p Name of person
+	 * @return Names of everyone in p's clique, or null if p is not a student
+	 * @throws IllegalArgumentException If the person is not in the graph
+	 */
+	public ArrayList<String> clique(String p)
+	throws IllegalArgumentException {
+		int v = lists.person(p);
+		if (!g.members[v].student)
+			return null;
+		return members(cliques(), v);
+	}
+
+	private ArrayList<String> members(Forest forest, int v) {
+		ArrayList<String> names = new ArrayList<String>(forest.size[forest.find(v)]);
+		int w = v;
+		do {
+			names.add(g.members[w].name);
+			w = forest.next[w];
+		} while (w != v);
+		return names;
+	}
+}
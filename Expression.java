@@ -4,6 +4,7 @@ import java.io.*;
 import java.util.*;
 import java.util.regex.*;
 
+import metrics.Metrics;
 import structures.Stack;
 
 public class Expression {
@@ -93,6 +94,22 @@ public class Expression {
      */
     public static float 
     evaluate(String expr, ArrayList<Variable> vars, ArrayList<Array> arrays) {
+    	if (!Metrics.ENABLED)
+    		return evaluate(expr, vars, arrays, 0, null);
+    	Metrics.Probe probe = Metrics.begin("app.evaluate");
+    	int[] maxDepth = new int[1];
+    	float result = evaluate(expr, vars, arrays, 0, maxDepth);
+    	probe.end(maxDepth[0]);
+    	return result;
+    }
+    
+    /*
+     * Evaluates the expression, nested depth entries deep in the stacks of the enclosing
+     * calls. If maxDepth is not null, maxDepth[0] is raised to the most entries held on
+     * all stacks at once.
+     */
+    private static float 
+    evaluate(String expr, ArrayList<Variable> vars, ArrayList<Array> arrays, int depth, int[] maxDepth) {
     	expr = expr.replace(" ", "");
     	String[] expression = expr.split("");
     	String entity = "", operatorlist = "+-*/";
@@ -129,7 +146,7 @@ public class Expression {
 					if (expr.charAt(j) == '(') skip++;
 					if (expr.charAt(j) == ')') skip--;
 				}
-    			operands.push(evaluate(expr.substring(i + 1, j - 1), vars, arrays));
+    			operands.push(evaluate(expr.substring(i + 1, j - 1), vars, arrays, depth + operands.size() + operators.size(), maxDepth));
     			entity = "";
     			i = j - 1;
     		}
@@ -142,12 +159,14 @@ public class Expression {
     					if (expr.charAt(j) == '[') skip++;
     					if (expr.charAt(j) == ']') skip--;
     				}
-    				int arrIndex = (int) (evaluate(expr.substring(i + 1, j - 1), vars, arrays)); 
+    				int arrIndex = (int) (evaluate(expr.substring(i + 1, j - 1), vars, arrays, depth + operands.size() + operators.size(), maxDepth)); 
     				operands.push(Float.valueOf(arrays.get(entIndex).values[arrIndex]));
     				entity = "";
     				i = j - 1;
     			}
     		}
+    		if (maxDepth != null)
+    			maxDepth[0] = Math.max(maxDepth[0], depth + operands.size() + operators.size());
     		// DIV/MUL
     		if (operands.size() > 1 && operators.peek().equals("/") && expr.charAt(i) != '/') {
     			operators.pop();
@@ -0,0 +1,105 @@
+package friends;
+
+/**
+ * Node by node access to the friend lists of a graph, so that the changes to them are
+ * written once for every form of the graph that keeps each person's friends on a linked
+ * list. N is the type of a node's handle, and null stands for no node.
+ *
+ */
+interface FriendLists<N> {
+
+	/**
+	 * Index of a person
+	 *
+	 * @param name Name of person
+	 * @return Index of person, or -1 if there is no one by that name
+	 */
+	int indexOf(String name);
+
+	/**
+	 * First node of a person's friend list
+	 */
+	N first(int v);
+
+	void setFirst(int v, N node);
+
+	N next(N node);
+
+	void setNext(N node, N next);
+
+	/**
+	 * Index of the friend that a node stands for
+	 */
+	int fnum(N node);
+
+	/**
+	 * Creates a node for a friend, followed by next.
+	 */
+	N newNode(int fnum, N next);
+
+	/**
+	 * Index of a person who must be in the graph
+	 *
+	 * @param name Name of person
+	 * @return Index of person
+	 * @throws IllegalArgumentException If there is no one by that name
+	 */
+	default int person(String name)
+	throws IllegalArgumentException {
+		int v = indexOf(name);
+		if (v == -1)
+			throw new IllegalArgumentException("No such person: " + name);
+		return v;
+	}
+
+	/**
+	 * Adds a friendship between two people, at the front of both friend lists.
+	 *
+	 * @param a Index of one person
+	 * @param b Index of other person
+	 * @return True if the friendship was added, false if they were already friends
+	 * @throws IllegalArgumentException If a is b
+	 */
+	default boolean addFriendship(int a, int b)
+	throws IllegalArgumentException {
+		if (a == b)
+			throw new IllegalArgumentException();
+		for (N node = first(a); node != null; node = next(node))
+			if (fnum(node) == b)
+				return false;
+		setFirst(a, newNode(b, first(a)));
+		setFirst(b, newNode(a, first(b)));
+		return true;
+	}
+
+	/**
+	 * Removes a friendship between two people from both friend lists.
+	 *
+	 * @param a Index of one person
+	 * @param b Index of other person
+	 * @return True if the friendship was removed, false if they were not friends
+	 */
+	default boolean removeFriendship(int a, int b) {
+		if (!unlink(a, b))
+			return false;
+		unlink(b, a);
+		return true;
+	}
+
+	/**
+	 * Removes b from a's friend list.
+	 *
+	 * @return True if b was on the list
+	 */
+	default boolean unlink(int a, int b) {
+		N prev = null;
+		for (N node = first(a); node != null; prev = node, node = next(node)) {
+			if (fnum(node) == b) {
+				if (prev == null) setFirst(a, next(node));
+				else setNext(prev, next(node));
+				return true;
+			}
+		}
+		return false;
+	}
+}
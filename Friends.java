@@ -1,10 +1,17 @@
 package friends;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
 
-import structures.Queue;
-import structures.Stack;
+import metrics.Metrics;
 
 public class Friends {
 
@@ -22,71 +29,11 @@ public class Friends {
 	 */
 	public static ArrayList<String> shortestChain(Graph g, String p1, String p2) {
 		
-		Person origin = new Person();
-		for (Person p : g.members) {
-			if (p.name.equals(p1))
-				origin = p;
-		}
-		if (origin.equals(null))
-			return null;
-		
-		Queue<Person> q = new Queue<Person>();
-		q.enqueue(origin);
-		
-		int shortestLength = bfs(g, q, new Queue<Person>(), 1, p2, new ArrayList<Integer>());
-		if (shortestLength == -1)
-			return null;
-		
-		ArrayList<String> shortestPath = new ArrayList<String>();
-		shortestPath.add(p1);
-		shortestLength--;
-		while (shortestLength > 0) {
-			Friend f = origin.first;
-			q = new Queue<Person>();
-			q.enqueue(g.members[f.fnum]);
-			while (f != null && bfs(g, q, new Queue<Person>(), 1, p2, new ArrayList<Integer>()) > shortestLength) {
-				f = f.next;
-				q = new Queue<Person>();
-				if (f != null)
-					q.enqueue(g.members[f.fnum]);
-			}
-			if (f == null)
-				break;
-			shortestPath.add(g.members[f.fnum].name);
-			shortestLength--;
-			origin = g.members[f.fnum];
-		}
-		shortestPath.add(p2);
-		return shortestPath;
+		return shortestChain(ChainSearch.adjacency(g), ChainSearch.pool(g),
+				p -> g.map.getOrDefault(p, -1), v -> g.members[v].name, p1, p2);
 		
 	}
 	
-	private static int bfs(Graph g, Queue<Person> upper, Queue<Person> lower, int level, String dest, ArrayList<Integer> visited) {
-
-		if (upper.size() == 0) {
-			if (lower.size() == 0)
-				return -1;
-			upper = lower;
-			lower = new Queue<Person>();
-			level++;
-		}
-
-		Person p = upper.dequeue();
-		Friend f = p.first;
-		
-		while (f != null) {
-			if (g.members[f.fnum].name.equals(dest))
-				return ++level;
-			if (!visited.contains(f.fnum)) {
-				lower.enqueue(g.members[f.fnum]);
-				visited.add(f.fnum);
-			}
-			f = f.next;
-		}
-		
-		return bfs(g, upper, lower, level, dest, visited);
-	}
-	
 	/**
 	 * Finds all cliques of students in a given school.
 	 * 
@@ -100,109 +47,326 @@ public class Friends {
 	 */
 	public static ArrayList<ArrayList<String>> cliques(Graph g, String school) {
 		
-		ArrayList<ArrayList<String>> result = new ArrayList<ArrayList<String>>();
-		ArrayList<Integer> visited = new ArrayList<Integer>();
-		for (int i = 0; i < g.members.length; i++) {
-			Person p = g.members[i];
-			if (!visited.contains(i) && p.student && p.school.equals(school)) {
-				Queue<Person> upper = new Queue<Person>();
-				upper.enqueue(p);
-				visited.add(i);
-				result.add(cliqueBfs(g, upper, new Queue<Person>(), new ArrayList<String>(), school, visited));
-			}
-		}
+		return cliques(new CsrGraph(g), school);
 		
-		return result;
+	}
+	
+	/**
+	 * Finds and returns all connectors in the graph.
+	 * 
+	 * @param g Graph for which connectors needs to be found.
+	 * @return Names of all connectors. Null if there are no connectors.
+	 */
+	public static ArrayList<String> connectors(Graph g) {
+		
+		return connectors(new CsrGraph(g));
+		
+	}
+	
+	/**
+	 * Finds the shortest chain of people from p1 to p2 in the CSR form of a graph.
+	 * Same as shortestChain(Graph, String, String).
+	 * 
+	 * @param g CSR graph for which shortest chain is to be found.
+	 * @param p1 Person with whom the chain originates
+	 * @param p2 Person at whom the chain terminates
+	 * @return The shortest chain from p1 to p2. Null if there is no
+	 *         path from p1 to p2
+	 */
+	public static ArrayList<String> shortestChain(CsrGraph g, String p1, String p2) {
 		
+		return shortestChain(g, g.searches, g::indexOf, g::name, p1, p2);
 	}
 	
-	private static ArrayList<String> cliqueBfs(Graph g, Queue<Person> upper, Queue<Person> lower, ArrayList<String> clique, String school, ArrayList<Integer> visited) {
+	/**
+	 * Finds the shortest chain of people from p1 to p2 in a memory-mapped graph,
+	 * reading the mapped file directly. Same as shortestChain(Graph, String, String).
+	 * 
+	 * @param g Mapped graph for which shortest chain is to be found.
+	 * @param p1 Person with whom the chain originates
+	 * @param p2 Person at whom the chain terminates
+	 * @return The shortest chain from p1 to p2. Null if there is no
+	 *         path from p1 to p2
+	 */
+	public static ArrayList<String> shortestChain(MappedGraph g, String p1, String p2) {
 		
-		if (upper.size() == 0) {
-			if (lower.size() == 0)
-				return clique;
-			upper = lower;
-			lower = new Queue<Person>();
-		}
+		return shortestChain(g, g.searches, g::indexOf, g::name, p1, p2);
+	}
+	
+	/**
+	 * Finds the shortest chain of people from p1 to p2 in a sharded graph, with a
+	 * bulk-synchronous BFS across the shards. Same as shortestChain(Graph, String, String).
+	 * 
+	 * @param g Sharded graph for which shortest chain is to be found.
+	 * @param p1 Person with whom the chain originates
+	 * @param p2 Person at whom the chain terminates
+	 * @return The shortest chain from p1 to p2. Null if there is no
+	 *         path from p1 to p2
+	 * @throws IOException If the transport between the shards fails
+	 */
+	public static ArrayList<String> shortestChain(ShardedGraph g, String p1, String p2)
+	throws IOException {
+		
+		return g.shortestChain(p1, p2);
+	}
+	
+	/*
+	 * Shortest chain from p1 to p2 in any form of a graph, found by a searcher from the
+	 * graph's pool, with the graph's own lookups between names and indexes
+	 */
+	static ArrayList<String> shortestChain(Adjacency g, ChainSearch.Pool pool,
+			ToIntFunction<String> indexOf, IntFunction<String> name, String p1, String p2) {
+		
+		int source = indexOf.applyAsInt(p1), dest = indexOf.applyAsInt(p2);
+		if (source == -1 || dest == -1)
+			return null;
 		
-		Person p = upper.dequeue();
-		if (p.student && p.school.equals(school) && !clique.contains(p.name)) {
-			clique.add(p.name);
+		Metrics.Probe probe = Metrics.ENABLED ? Metrics.begin("friends.shortestChain") : null;
+		ChainSearch search = pool.take();
+		int[] chain;
+		try {
+			chain = search.search(g, source, dest);
+			if (probe != null)
+				probe.end(search.visited);
+		} finally {
+			pool.give(search);
 		}
-		Friend f = p.first;
+		if (chain == null)
+			return null;
+		
+		ArrayList<String> shortestPath = new ArrayList<String>(chain.length);
+		for (int v : chain)
+			shortestPath.add(name.apply(v));
+		return shortestPath;
+	}
+	
+	/**
+	 * Finds the shortest chains from one person to many others, with a single BFS.
+	 * 
+	 * @param g CSR graph for which shortest chains are to be found.
+	 * @param p1 Person with whom all chains originate
+	 * @param others People at whom the chains terminate
+	 * @return Map from each person in others who can be reached from p1 to the shortest
+	 *         chain from p1 to them. People who cannot be reached are left out.
+	 */
+	public static HashMap<String, ArrayList<String>> shortestChains(CsrGraph g, String p1, Collection<String> others) {
 		
-		while (f != null) {
-			if (!visited.contains(f.fnum) && g.members[f.fnum].student && g.members[f.fnum].school.equals(school)) {
-				clique.add(g.members[f.fnum].name);
-				lower.enqueue(g.members[f.fnum]);
-				visited.add(f.fnum);
+		HashMap<String, ArrayList<String>> result = new HashMap<String, ArrayList<String>>();
+		int source = g.indexOf(p1);
+		if (source == -1)
+			return result;
+		int[] targets = indexes(g, others);
+		
+		ChainSearch search = g.searches.take();
+		try {
+			search.reach(g, source, targets);
+			for (int t : targets) {
+				int[] chain = search.chainTo(t);
+				if (chain != null)
+					result.put(g.names[t], names(g, chain));
 			}
-			f = f.next;
+		} finally {
+			g.searches.give(search);
 		}
-		
-		return cliqueBfs(g, upper, lower, clique, school, visited);
+		return result;
 	}
 	
 	/**
-	 * Finds and returns all connectors in the graph.
+	 * Finds the shortest chains between all pairs of people in a group. The people are
+	 * taken 64 at a time, and each batch runs as one multi-source BFS that stops once
+	 * every person in it has reached everyone in the group after them, so a group of g
+	 * people costs (g + 63) / 64 traversals. Each chain is also returned reversed for the
+	 * opposite direction.
 	 * 
-	 * @param g Graph for which connectors needs to be found.
-	 * @return Names of all connectors. Null if there are no connectors.
+	 * @param g CSR graph for which shortest chains are to be found.
+	 * @param group People whose chains are to be found
+	 * @return Map from each person p in the group to a map from each other person q in the
+	 *         group who can be reached from p, to the shortest chain from p to q
 	 */
-	public static ArrayList<String> connectors(Graph g) {
+	public static HashMap<String, HashMap<String, ArrayList<String>>> groupChains(CsrGraph g, List<String> group) {
 		
-		ArrayList<String> result = new ArrayList<String>();
-		ArrayList<Integer> visited = new ArrayList<Integer>();
-		int[] dfsNum = new int[g.members.length];
-		int[] back = new int[g.members.length];
-		
-		for (int i = 0; i < g.members.length; i++) {
-			if (!visited.contains(i)) {
-				
-				ArrayList<String> temp = dfs(g, 1, i, dfsNum, back, new HashMap<Integer, Integer>(), visited, new ArrayList<String>(), g.members[i]);
-				for (String each : temp)
-					result.add(each);
+		HashMap<String, HashMap<String, ArrayList<String>>> result = new HashMap<String, HashMap<String, ArrayList<String>>>();
+		int[] people = indexes(g, group);
+		for (int v : people)
+			result.put(g.names[v], new HashMap<String, ArrayList<String>>());
+		
+		for (int first = 0; first < people.length; first += MultiSourceBfs.SOURCES) {
+			MultiSourceBfs bfs = new MultiSourceBfs(g, people, first);
+			int last = Math.min(first + MultiSourceBfs.SOURCES, people.length);
+			for (int i = first; i < last; i++) {
+				for (int j = i + 1; j < people.length; j++) {
+					int[] chain = bfs.chain(i, people[j]);
+					if (chain == null)
+						continue;
+					ArrayList<String> forward = names(g, chain), backward = new ArrayList<String>(forward);
+					Collections.reverse(backward);
+					result.get(g.names[people[i]]).put(g.names[people[j]], forward);
+					result.get(g.names[people[j]]).put(g.names[people[i]], backward);
+				}
 			}
 		}
+		return result;
+	}
+	
+	/**
+	 * Finds up to k shortest chains from p1 to p2, shortest first. No chain goes
+	 * through the same person twice, and no two chains are the same.
+	 * 
+	 * @param g CSR graph for which chains are to be found.
+	 * @param p1 Person with whom the chains originate
+	 * @param p2 Person at whom the chains terminate
+	 * @param k Maximum number of chains
+	 * @return Up to k distinct chains from p1 to p2, in order of length. Empty if there
+	 *         is no path from p1 to p2
+	 */
+	public static ArrayList<ArrayList<String>> kShortestChains(CsrGraph g, String p1, String p2, int k) {
+		
+		ArrayList<ArrayList<String>> result = new ArrayList<ArrayList<String>>();
+		int source = g.indexOf(p1), dest = g.indexOf(p2);
+		if (source == -1 || dest == -1)
+			return result;
 		
+		ChainSearch search = g.searches.take();
+		try {
+			for (int[] chain : search.kShortest(g, source, dest, k))
+				result.add(names(g, chain));
+		} finally {
+			g.searches.give(search);
+		}
 		return result;
+	}
+	
+	/*
+	 * Indexes of the named people who are in the graph, each once
+	 */
+	private static int[] indexes(CsrGraph g, Collection<String> people) {
+		LinkedHashSet<Integer> found = new LinkedHashSet<Integer>();
+		for (String p : people) {
+			int v = g.indexOf(p);
+			if (v != -1)
+				found.add(v);
+		}
+		int[] result = new int[found.size()];
+		int i = 0;
+		for (int v : found)
+			result[i++] = v;
+		return result;
+	}
+	
+	/**
+	 * Counts the people at each degree of separation from p, with a parallel
+	 * breadth-first search over the whole graph.
+	 *
+	 * @param g CSR graph to search
+	 * @param p Person to start from
+	 * @return Element i is the number of people i friendships away from p, starting
+	 *         with p itself at 0. Null if p is not in the graph
+	 */
+	public static ArrayList<Integer> separation(CsrGraph g, String p) {
 		
+		int source = g.indexOf(p);
+		if (source == -1)
+			return null;
+		return new ParallelBfs(g, source).levelSizes();
 	}
 	
-	private static ArrayList<String> dfs(Graph g, int level, int index, int[] dfsNum, int[] backNum, HashMap<Integer, Integer> back, ArrayList<Integer> visited, ArrayList<String> connectors, Person origin) {	
-
-		dfsNum[index] = level;
-		backNum[index] = level;
-		level++;
-		visited.add(index);
-		
-		Friend f = g.members[index].first;
-		while (f != null) {
-			if (!visited.contains(f.fnum)) {
-				back.put(f.fnum, index);
-				dfs(g, level, f.fnum, dfsNum, backNum, back, visited, connectors, origin);
-				backNum[index] = Math.min(backNum[index], backNum[f.fnum]);
-				if (backNum[f.fnum] >= dfsNum[index]) {
-					int friends = 0;
-					if (g.members[index].equals(origin)) {
-						Friend temp = origin.first;
-						while (temp != null) {
-							friends++;
-							temp = temp.next;
-						}
-					}
-					if (!connectors.contains(g.members[index].name) && ((g.members[index].equals(origin) && friends > 1) || !g.members[index].equals(origin))) {
-						connectors.add(g.members[index].name);
-					}
-				}
-			}
-			else if (f.fnum != back.get(index)) {
-				backNum[index] = Math.min(backNum[index], dfsNum[f.fnum]);
-			}
-			f = f.next;
+	/**
+	 * Estimates the diameter of the graph, the longest shortest chain between any two
+	 * connected people, as the largest eccentricity of a few people picked at random.
+	 * The estimate is a lower bound.
+	 *
+	 * @param g CSR graph to search
+	 * @param samples Number of people to search from
+	 * @param seed Seed for picking people
+	 * @return Largest number of friendships between a sampled person and anyone they
+	 *         are connected to. 0 if the graph is empty
+	 */
+	public static int diameter(CsrGraph g, int samples, long seed) {
+		
+		Random random = new Random(seed);
+		int diameter = 0;
+		for (int i = 0; i < samples && g.size() > 0; i++)
+			diameter = Math.max(diameter, new ParallelBfs(g, random.nextInt(g.size())).eccentricity());
+		return diameter;
+	}
+	
+	/**
+	 * Finds all cliques of students in a given school, in the CSR form of a graph.
+	 * Same as cliques(Graph, String).
+	 * 
+	 * @param g CSR graph for which cliques are to be found.
+	 * @param school Name of school
+	 * @return Array list of clique array lists. Empty if there is no student in the
+	 *         given school
+	 */
+	public static ArrayList<ArrayList<String>> cliques(CsrGraph g, String school) {
+		
+		ArrayList<ArrayList<String>> result = new ArrayList<ArrayList<String>>();
+		int id = g.schoolOf(school);
+		if (id == -1)
+			return result;
+		
+		for (int[] clique : new ParallelComponents(g, v -> g.school[v] == id).components(0))
+			result.add(names(g, clique));
+		return result;
+	}
+	
+	/**
+	 * Finds all cliques of students in a given school, in a sharded graph.
+	 * Same as cliques(Graph, String).
+	 * 
+	 * @param g Sharded graph for which cliques are to be found.
+	 * @param school Name of school
+	 * @return Array list of clique array lists. Empty if there is no student in the
+	 *         given school
+	 * @throws IOException If the transport between the shards fails
+	 */
+	public static ArrayList<ArrayList<String>> cliques(ShardedGraph g, String school)
+	throws IOException {
+		
+		return g.cliques(school);
+	}
+	
+	/**
+	 * Finds the cliques of every school at once, in a single pass over the graph.
+	 * 
+	 * @param g CSR graph for which cliques are to be found.
+	 * @return Map from the name of each school to its list of clique array lists, as
+	 *         returned by cliques for that school
+	 */
+	public static HashMap<String, ArrayList<ArrayList<String>>> allCliques(CsrGraph g) {
+		
+		ArrayList<ArrayList<int[]>> bySchool = new ParallelComponents(g, g.school).componentsByLabel(g.schools.length);
+		HashMap<String, ArrayList<ArrayList<String>>> result = new HashMap<String, ArrayList<ArrayList<String>>>();
+		for (int s = 0; s < g.schools.length; s++) {
+			ArrayList<ArrayList<String>> cliques = new ArrayList<ArrayList<String>>();
+			for (int[] clique : bySchool.get(s))
+				cliques.add(names(g, clique));
+			result.put(g.schools[s], cliques);
 		}
+		return result;
+	}
+	
+	private static ArrayList<String> names(CsrGraph g, int[] people) {
+		ArrayList<String> names = new ArrayList<String>(people.length);
+		for (int v : people)
+			names.add(g.names[v]);
+		return names;
+	}
+	
+	/**
+	 * Finds and returns all connectors in the CSR form of a graph.
+	 * Same as connectors(Graph).
+	 * 
+	 * @param g CSR graph for which connectors needs to be found.
+	 * @return Names of all connectors. Empty if there are no connectors.
+	 */
+	public static ArrayList<String> connectors(CsrGraph g) {
 		
-		return connectors;
+		ArrayList<String> result = new ArrayList<String>();
+		for (int v : new Biconnectivity(g).connectors())
+			result.add(g.names[v]);
+		return result;
 	}
 	
 }
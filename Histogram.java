@@ -0,0 +1,85 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a concurrent histogram of non-negative longs with bounded relative
+ * error, laid out like an HdrHistogram.
+ *
+ * Values below 64 get a bucket each. Above that, every power of two [2^e, 2^(e+1)) is
+ * split into 32 equal buckets, so a value is known to within 1/32 (about 3%) of itself,
+ * and the whole long range fits in under 2000 buckets. Recording is one atomic increment.
+ *
+ */
+public class Histogram {
+
+	private static final int SUB_BITS = 5;
+	private static final int SUB = 1 << SUB_BITS;
+	private static final int BUCKETS = (63 - SUB_BITS) * SUB + SUB;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong max = new AtomicLong(), total = new AtomicLong();
+
+	static int index(long value) {
+		if (value < 2 * SUB)
+			return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return (shift << SUB_BITS) + (int) (value >>> shift);
+	}
+
+	static long lowest(int index) {
+		if (index < 2 * SUB)
+			return index;
+		int shift = (index >>> SUB_BITS) - 1;
+		return (long) (index & (SUB - 1) | SUB) << shift;
+	}
+
+	/**
+	 * Records a value.
+	 *
+	 * @param value Value to record, negative values are recorded as 0
+	 */
+	public void record(long value) {
+		value = Math.max(0, value);
+		counts.incrementAndGet(index(value));
+		total.incrementAndGet();
+		long m;
+		while (value > (m = max.get()) && !max.compareAndSet(m, value));
+	}
+
+	/**
+	 * Number of values recorded
+	 *
+	 * @return Count
+	 */
+	public long count() {
+		return total.get();
+	}
+
+	/**
+	 * Largest value recorded
+	 *
+	 * @return Exact maximum, 0 if nothing was recorded
+	 */
+	public long max() {
+		return max.get();
+	}
+
+	/**
+	 * Value at a percentile, e.g. 50 for the median or 99.9
+	 *
+	 * @param percentile Percentile, between 0 and 100
+	 * @return Lowest value of the bucket that holds the percentile, 0 if nothing was
+	 *         recorded
+	 */
+	public long percentile(double percentile) {
+		long n = total.get(), rank = (long) Math.ceil(percentile / 100 * n), seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= Math.max(1, rank) && seen > 0)
+				return lowest(i);
+		}
+		return 0;
+	}
+}
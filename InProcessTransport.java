@@ -0,0 +1,53 @@
+package friends;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class is a ShardTransport for shards that share one JVM. A batch is copied
+ * straight into the inbox of the receiving shard.
+ *
+ * Every shard is flushed by the time its superstep's compute phase has finished, so
+ * receive does not need to wait.
+ *
+ */
+public class InProcessTransport implements ShardTransport {
+
+	private final ArrayList<ArrayList<int[]>> inbox = new ArrayList<ArrayList<int[]>>();
+
+	/**
+	 * Creates a transport.
+	 *
+	 * @param shards Number of shards
+	 */
+	public InProcessTransport(int shards) {
+		for (int s = 0; s < shards; s++)
+			inbox.add(new ArrayList<int[]>());
+	}
+
+	public int shards() {
+		return inbox.size();
+	}
+
+	public void send(int from, int to, int[] batch, int length) {
+		ArrayList<int[]> box = inbox.get(to);
+		synchronized (box) {
+			box.add(Arrays.copyOf(batch, length));
+		}
+	}
+
+	public void flush(int from) {
+	}
+
+	public ArrayList<int[]> receive(int to) {
+		ArrayList<int[]> box = inbox.get(to);
+		synchronized (box) {
+			ArrayList<int[]> batches = new ArrayList<int[]>(box);
+			box.clear();
+			return batches;
+		}
+	}
+
+	public void close() {
+	}
+}
@@ -0,0 +1,161 @@
+package friends;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is a ShardTransport over TCP sockets on the loopback interface, so that
+ * shards exchange their batches exactly as they would between machines.
+ *
+ * Each shard listens on its own port. The first batch from one shard to another opens a
+ * connection, which is kept for the life of the transport. On the wire, a batch is its
+ * length followed by its ints, and flush writes a length of -1 to every shard. A reader
+ * thread per connection queues incoming batches, and receive takes them off the queue
+ * until it has seen the flush mark of every shard.
+ *
+ */
+public class LoopbackTransport implements ShardTransport {
+
+	private static final int[] END = new int[0];
+	private static final long TIMEOUT_SECONDS = 60;
+
+	private final ServerSocket[] servers;
+	private final DataOutputStream[][] out;
+	private final ArrayList<LinkedBlockingQueue<int[]>> inbox = new ArrayList<LinkedBlockingQueue<int[]>>();
+	private final ArrayList<Socket> sockets = new ArrayList<Socket>();
+	private volatile boolean closed = false;
+
+	/**
+	 * Opens a listening socket for every shard.
+	 *
+	 * @param shards Number of shards
+	 * @throws IOException If a socket cannot be opened
+	 */
+	public LoopbackTransport(int shards)
+	throws IOException {
+		servers = new ServerSocket[shards];
+		out = new DataOutputStream[shards][shards];
+		for (int s = 0; s < shards; s++) {
+			inbox.add(new LinkedBlockingQueue<int[]>());
+			servers[s] = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+			ServerSocket server = servers[s];
+			LinkedBlockingQueue<int[]> queue = inbox.get(s);
+			daemon(() -> accept(server, queue), "shard-" + s + "-accept");
+		}
+	}
+
+	private static void daemon(Runnable r, String name) {
+		Thread t = new Thread(r, name);
+		t.setDaemon(true);
+		t.start();
+	}
+
+	private void accept(ServerSocket server, LinkedBlockingQueue<int[]> queue) {
+		while (!closed) {
+			try {
+				Socket socket = server.accept();
+				synchronized (sockets) {
+					sockets.add(socket);
+				}
+				daemon(() -> read(socket, queue), "shard-read");
+			} catch (IOException e) {
+				return;
+			}
+		}
+	}
+
+	private void read(Socket socket, LinkedBlockingQueue<int[]> queue) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16))) {
+			while (true) {
+				int length = in.readInt();
+				if (length == -1) {
+					queue.add(END);
+					continue;
+				}
+				int[] batch = new int[length];
+				for (int i = 0; i < length; i++)
+					batch[i] = in.readInt();
+				queue.add(batch);
+			}
+		} catch (IOException e) {
+			// connection closed
+		}
+	}
+
+	private DataOutputStream out(int from, int to)
+	throws IOException {
+		if (out[from][to] == null) {
+			Socket socket = new Socket(InetAddress.getLoopbackAddress(), servers[to].getLocalPort());
+			socket.setTcpNoDelay(true);
+			synchronized (sockets) {
+				sockets.add(socket);
+			}
+			out[from][to] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+		}
+		return out[from][to];
+	}
+
+	public int shards() {
+		return servers.length;
+	}
+
+	public void send(int from, int to, int[] batch, int length)
+	throws IOException {
+		DataOutputStream o = out(from, to);
+		o.writeInt(length);
+		for (int i = 0; i < length; i++)
+			o.writeInt(batch[i]);
+	}
+
+	public void flush(int from)
+	throws IOException {
+		for (int to = 0; to < servers.length; to++) {
+			DataOutputStream o = out(from, to);
+			o.writeInt(-1);
+			o.flush();
+		}
+	}
+
+	public ArrayList<int[]> receive(int to)
+	throws IOException {
+		ArrayList<int[]> batches = new ArrayList<int[]>();
+		LinkedBlockingQueue<int[]> queue = inbox.get(to);
+		for (int ends = 0; ends < servers.length; ) {
+			int[] batch;
+			try {
+				batch = queue.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while receiving", e);
+			}
+			if (batch == null)
+				throw new IOException("Timed out waiting for shards to flush");
+			if (batch == END) ends++;
+			else batches.add(batch);
+		}
+		return batches;
+	}
+
+	/**
+	 * Closes every socket. The transport cannot be used afterwards.
+	 */
+	public void close()
+	throws IOException {
+		closed = true;
+		for (ServerSocket server : servers)
+			server.close();
+		synchronized (sockets) {
+			for (Socket socket : sockets)
+				socket.close();
+		}
+	}
+}
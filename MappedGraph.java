@@ -0,0 +1,360 @@
+package friends;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Scanner;
+
+/**
+ * This class is a read-only friends graph that lives in a memory-mapped file.
+ *
+ * The file holds a CsrGraph: the offsets and neighbors arrays, interned school ids, and
+ * name and school string tables, plus the people sorted by name so that a name can be
+ * looked up by binary search. open maps the file and wraps int views around it, copying
+ * and parsing nothing, so opening even a very large graph costs only the page faults of
+ * the parts that are actually read.
+ *
+ * File layout (all values big-endian):
+ * <pre>
+ *    header        int magic, int version, int people, int neighbors, int schools
+ *    offsets       (people + 1) x int
+ *    neighbors     neighbors x int
+ *    school        people x int, -1 if not a student
+ *    nameAt        (people + 1) x int, start of each name in the name bytes
+ *    byName        people x int, indexes of people sorted by the bytes of their names
+ *    schoolAt      (schools + 1) x int, start of each school in the school bytes
+ *    name bytes    UTF-8
+ *    school bytes  UTF-8
+ * </pre>
+ * A single mapping is limited to 2GB, and so is the file.
+ *
+ */
+public class MappedGraph implements Adjacency {
+
+	static final int MAGIC = 0x46524e44; // "FRND"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 20;
+
+	private final ByteBuffer buf;
+	final IntBuffer offsets, neighbors;
+	private final IntBuffer school, nameAt, byName, schoolAt;
+	private final int people, schools, namesAt, schoolsAt;
+
+	// searchers for shortest chains, sized for this graph
+	final ChainSearch.Pool searches;
+
+	private MappedGraph(ByteBuffer buf) throws IOException {
+		if (buf.capacity() < HEADER_BYTES || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+			throw new IOException("Not a graph file");
+		this.buf = buf;
+		people = buf.getInt(8);
+		int edges = buf.getInt(12);
+		schools = buf.getInt(16);
+
+		int at = HEADER_BYTES;
+		offsets = ints(at, people + 1);
+		neighbors = ints(at += (people + 1) * 4, edges);
+		school = ints(at += edges * 4, people);
+		nameAt = ints(at += people * 4, people + 1);
+		byName = ints(at += (people + 1) * 4, people);
+		schoolAt = ints(at += people * 4, schools + 1);
+		namesAt = at + (schools + 1) * 4;
+		schoolsAt = namesAt + nameAt.get(people);
+		if (schoolsAt + schoolAt.get(schools) != buf.capacity())
+			throw new IOException("Truncated graph file");
+		searches = new ChainSearch.Pool(people);
+	}
+
+	private IntBuffer ints(int at, int count) {
+		ByteBuffer view = buf.duplicate();
+		view.position(at).limit(at + count * 4);
+		return view.slice().asIntBuffer();
+	}
+
+	/**
+	 * Maps a graph file that was previously saved with write or convert.
+	 *
+	 * @param file Graph file
+	 * @return Graph that answers queries against the mapped file
+	 * @throws IOException If the file cannot be mapped or is not a graph file
+	 */
+	public static MappedGraph open(Path file)
+	throws IOException {
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (ch.size() > Integer.MAX_VALUE)
+				throw new IOException("Graph file larger than 2GB");
+			MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			return new MappedGraph(map);
+		}
+	}
+
+	/**
+	 * Saves a CSR graph to a file.
+	 *
+	 * @param g CSR graph
+	 * @param file File to write, replaced if it exists
+	 * @throws IOException If the file cannot be written
+	 */
+	public static void write(CsrGraph g, Path file)
+	throws IOException {
+		write(g.offsets, g.neighbors, g.names, g.school, g.schools, file);
+	}
+
+	/**
+	 * Converts a graph from the text format read by the Graph constructor straight to a
+	 * graph file, without building any Person or Friend objects.
+	 *
+	 * @param sc Scanner for the text input
+	 * @param file File to write, replaced if it exists
+	 * @throws IOException If the file cannot be written
+	 */
+	public static void convert(Scanner sc, Path file)
+	throws IOException {
+		int n = Integer.parseInt(sc.nextLine().trim());
+		String[] names = new String[n];
+		int[] school = new int[n];
+		HashMap<String, Integer> index = new HashMap<String, Integer>(n * 2);
+		HashMap<String, Integer> schoolIds = new HashMap<String, Integer>();
+		ArrayList<String> schools = new ArrayList<String>();
+		for (int v = 0; v < n; v++) {
+			String[] tokens = sc.nextLine().trim().toLowerCase().split("\\|");
+			names[v] = tokens[0];
+			index.put(tokens[0], v);
+			school[v] = -1;
+			if (tokens[1].equals("y")) {
+				Integer id = schoolIds.get(tokens[2]);
+				if (id == null) {
+					id = schools.size();
+					schoolIds.put(tokens[2], id);
+					schools.add(tokens[2]);
+				}
+				school[v] = id;
+			}
+		}
+
+		// each friendship goes both ways
+		int[] from = new int[16], to = new int[16];
+		int m = 0;
+		int[] offsets = new int[n + 1];
+		while (sc.hasNextLine()) {
+			String line = sc.nextLine().trim();
+			if (line.length() == 0)
+				continue;
+			String[] tokens = line.toLowerCase().split("\\|");
+			int a = index.get(tokens[0]), b = index.get(tokens[1]);
+			if (m + 2 > from.length) {
+				from = Arrays.copyOf(from, from.length * 2);
+				to = Arrays.copyOf(to, to.length * 2);
+			}
+			from[m] = a;
+			to[m++] = b;
+			from[m] = b;
+			to[m++] = a;
+			offsets[a + 1]++;
+			offsets[b + 1]++;
+		}
+
+		for (int v = 0; v < n; v++)
+			offsets[v + 1] += offsets[v];
+		int[] neighbors = new int[m], fill = Arrays.copyOf(offsets, n);
+		for (int e = 0; e < m; e++)
+			neighbors[fill[from[e]]++] = to[e];
+
+		write(offsets, neighbors, names, school, schools.toArray(new String[schools.size()]), file);
+	}
+
+	private static void write(int[] offsets, int[] neighbors, String[] names, int[] school, String[] schools, Path file)
+	throws IOException {
+		int n = names.length;
+		byte[][] nameBytes = new byte[n][];
+		long size = HEADER_BYTES + 4L * (offsets.length + neighbors.length + school.length + (n + 1) + n + (schools.length + 1));
+		for (int v = 0; v < n; v++) {
+			nameBytes[v] = names[v].getBytes(StandardCharsets.UTF_8);
+			size += nameBytes[v].length;
+		}
+		byte[][] schoolBytes = new byte[schools.length][];
+		for (int s = 0; s < schools.length; s++) {
+			schoolBytes[s] = schools[s].getBytes(StandardCharsets.UTF_8);
+			size += schoolBytes[s].length;
+		}
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Graph file larger than 2GB");
+
+		Integer[] byName = new Integer[n];
+		for (int v = 0; v < n; v++)
+			byName[v] = v;
+		Arrays.sort(byName, (a, b) -> compare(nameBytes[a], nameBytes[b]));
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(n);
+			out.writeInt(neighbors.length);
+			out.writeInt(schools.length);
+			for (int x : offsets) out.writeInt(x);
+			for (int x : neighbors) out.writeInt(x);
+			for (int x : school) out.writeInt(x);
+			int at = 0;
+			for (byte[] b : nameBytes) {
+				out.writeInt(at);
+				at += b.length;
+			}
+			out.writeInt(at);
+			for (int v : byName) out.writeInt(v);
+			at = 0;
+			for (byte[] b : schoolBytes) {
+				out.writeInt(at);
+				at += b.length;
+			}
+			out.writeInt(at);
+			for (byte[] b : nameBytes) out.write(b);
+			for (byte[] b : schoolBytes) out.write(b);
+		}
+	}
+
+	private static int compare(byte[] a, byte[] b) {
+		int n = Math.min(a.length, b.length);
+		for (int i = 0; i < n; i++) {
+			int c = (a[i] & 0xff) - (b[i] & 0xff);
+			if (c != 0)
+				return c;
+		}
+		return a.length - b.length;
+	}
+
+	/**
+	 * Number of people in the graph
+	 *
+	 * @return Number of people
+	 */
+	public int size() {
+		return people;
+	}
+
+	/**
+	 * Number of friends of a person
+	 *
+	 * @param v Index of person
+	 * @return Number of friends
+	 */
+	public int degree(int v) {
+		return offsets.get(v + 1) - offsets.get(v);
+	}
+
+	/**
+	 * Copies the indexes of the friends of a person into a buffer, as many as fit.
+	 *
+	 * @param v Index of person
+	 * @param buffer Buffer for the indexes of the friends
+	 * @return Number of friends, more than were copied if the buffer is too short
+	 */
+	public int friends(int v, int[] buffer) {
+		int start = offsets.get(v), degree = offsets.get(v + 1) - start;
+		neighbors.get(start, buffer, 0, Math.min(degree, buffer.length));
+		return degree;
+	}
+
+	/**
+	 * Name of a person
+	 *
+	 * @param v Index of person
+	 * @return Name
+	 */
+	public String name(int v) {
+		return string(namesAt, nameAt.get(v), nameAt.get(v + 1));
+	}
+
+	/**
+	 * School of a person
+	 *
+	 * @param v Index of person
+	 * @return Name of school, or null if v is not a student
+	 */
+	public String school(int v) {
+		int s = school.get(v);
+		return s == -1 ? null : string(schoolsAt, schoolAt.get(s), schoolAt.get(s + 1));
+	}
+
+	/*
+	 * Interned school id of a person, -1 if not a student
+	 */
+	int schoolId(int v) {
+		return school.get(v);
+	}
+
+	/*
+	 * Names of the schools, by interned id
+	 */
+	String[] schools() {
+		String[] schoolNames = new String[schools];
+		for (int s = 0; s < schools; s++)
+			schoolNames[s] = string(schoolsAt, schoolAt.get(s), schoolAt.get(s + 1));
+		return schoolNames;
+	}
+
+	private String string(int base, int from, int to) {
+		byte[] bytes = new byte[to - from];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = buf.get(base + from + i);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Index of a person, found by binary search over the sorted name table
+	 *
+	 * @param name Name of person
+	 * @return Index of person, or -1 if there is no one by that name
+	 */
+	public int indexOf(String name) {
+		byte[] key = name.getBytes(StandardCharsets.UTF_8);
+		int lo = 0, hi = people - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int v = byName.get(mid);
+			int c = compareName(v, key);
+			if (c < 0) lo = mid + 1;
+			else if (c > 0) hi = mid - 1;
+			else return v;
+		}
+		return -1;
+	}
+
+	private int compareName(int v, byte[] key) {
+		int from = namesAt + nameAt.get(v), length = nameAt.get(v + 1) - nameAt.get(v);
+		int n = Math.min(length, key.length);
+		for (int i = 0; i < n; i++) {
+			int c = (buf.get(from + i) & 0xff) - (key[i] & 0xff);
+			if (c != 0)
+				return c;
+		}
+		return length - key.length;
+	}
+
+	/**
+	 * Copies the graph into a CsrGraph, for whole-graph work such as cliques and
+	 * connectors. The arrays are bulk-copied; the names are decoded.
+	 *
+	 * @return CSR graph
+	 */
+	public CsrGraph toCsr() {
+		int[] o = new int[people + 1], nb = new int[neighbors.capacity()], sc = new int[people];
+		offsets.duplicate().get(o);
+		neighbors.duplicate().get(nb);
+		school.duplicate().get(sc);
+		String[] names = new String[people];
+		for (int v = 0; v < people; v++)
+			names[v] = name(v);
+		return new CsrGraph(o, nb, names, sc, schools());
+	}
+}
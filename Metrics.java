@@ -0,0 +1,140 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * This class is the entry point for metrics on the data structure operations
+ * (BigInteger.multiply, Expression.evaluate, Trie.completionList, Friends.shortestChain).
+ *
+ * Metrics are off unless the JVM is started with -Dmetrics.enabled=true. ENABLED is a
+ * static final, so when it is false the JIT folds away every guarded call site and the
+ * instrumented operations run exactly as if they were not instrumented. An instrumented
+ * operation looks like:
+ * <pre>
+ *    Metrics.Probe probe = Metrics.ENABLED ? Metrics.begin("bigint.multiply") : null;
+ *    ...
+ *    if (probe != null)
+ *        probe.end(digits);
+ * </pre>
+ * Each probe measures the latency of one call and the bytes the calling thread allocated
+ * during it, takes a count of the work the call did (digits, nodes, people, ...), and
+ * hands all three to the current Sink. The default sink is a Recorder, which keeps
+ * operation counts and histograms. Each probe is also a JFR OperationEvent, so it shows
+ * up in flight recordings whenever that event is enabled.
+ *
+ */
+public final class Metrics {
+
+	/**
+	 * True if metrics are collected, from the metrics.enabled system property
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("metrics.enabled");
+
+	/**
+	 * Receives one measurement per instrumented call. Implementations must be thread-safe.
+	 */
+	public interface Sink {
+
+		/**
+		 * Records one call.
+		 *
+		 * @param operation Name of operation, such as "trie.completionList"
+		 * @param nanos Latency of the call in nanoseconds
+		 * @param allocatedBytes Bytes allocated by the calling thread during the call,
+		 *        or -1 if the JVM cannot tell
+		 * @param work Work done by the call, in units of the operation
+		 */
+		void record(String operation, long nanos, long allocatedBytes, long work);
+	}
+
+	/**
+	 * One call being measured. Started by begin, finished by end.
+	 */
+	public static final class Probe {
+		private final String operation;
+		private final OperationEvent event;
+		private final long allocated, start;
+
+		private Probe(String operation) {
+			this.operation = operation;
+			event = new OperationEvent();
+			event.begin();
+			allocated = allocatedBytes();
+			start = System.nanoTime();
+		}
+
+		/**
+		 * Finishes the measurement and records it.
+		 *
+		 * @param work Work done by the call, in units of the operation
+		 */
+		public void end(long work) {
+			long nanos = System.nanoTime() - start;
+			long bytes = allocated == -1 ? -1 : allocatedBytes() - allocated;
+			sink.record(operation, nanos, bytes, work);
+			event.end();
+			if (event.shouldCommit()) {
+				event.operation = operation;
+				event.work = work;
+				event.allocated = bytes;
+				event.commit();
+			}
+		}
+	}
+
+	private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+	private static volatile Sink sink = new Recorder();
+
+	// prevent instantiation
+	private Metrics() { }
+
+	private static com.sun.management.ThreadMXBean threads() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+			if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled())
+				return threads;
+		}
+		return null;
+	}
+
+	/*
+	 * Bytes allocated so far by the current thread, or -1 if not supported
+	 */
+	private static long allocatedBytes() {
+		return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+	}
+
+	/**
+	 * Starts measuring a call. Only to be called when ENABLED is true.
+	 *
+	 * @param operation Name of operation
+	 * @return Probe to end when the call returns
+	 */
+	public static Probe begin(String operation) {
+		return new Probe(operation);
+	}
+
+	/**
+	 * Replaces the sink that measurements go to.
+	 *
+	 * @param s New sink
+	 * @throws IllegalArgumentException If s is null
+	 */
+	public static void setSink(Sink s)
+	throws IllegalArgumentException {
+		if (s == null)
+			throw new IllegalArgumentException();
+		sink = s;
+	}
+
+	/**
+	 * Current sink
+	 *
+	 * @return Sink that measurements go to, a Recorder unless replaced with setSink
+	 */
+	public static Sink sink() {
+		return sink;
+	}
+}
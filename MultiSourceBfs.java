@@ -0,0 +1,144 @@
+package friends;
+
+import java.util.Arrays;
+
+/**
+ * This class runs one breadth-first search from up to 64 people of a group at once, with
+ * one bit per source in a long per person (multi-source BFS, Then et al.), and keeps the
+ * chain from each of them to every later person in the group.
+ *
+ * All the sources advance together, level by level: a person on the frontier passes the
+ * bits of the sources that reached them to every friend that has not yet seen those
+ * sources, so each friendship is looked at once per level for all 64 sources instead of
+ * once per source. A person who receives new bits records which bits came from whom, and
+ * the chain from a source is read back through those records. The search stops as soon
+ * as every source has reached every later person of the group that it can reach.
+ *
+ * It takes 28 bytes per person, plus 16 bytes per record: a person gets one record per
+ * friend through whom new sources first reach them, which is at most 64.
+ *
+ */
+final class MultiSourceBfs {
+
+	static final int SOURCES = 64;
+
+	private final int[] people;
+	private final int first, count;
+	private final long[] seen;
+	private final int[] head;
+	private long[] recordBits = new long[64];
+	private int[] recordFrom = new int[64], recordNext = new int[64];
+	private int records = 0;
+
+	/**
+	 * Runs the search from people[first] up to people[first + 63], or the last person,
+	 * until each of them has reached every person after them in people that it can.
+	 *
+	 * @param g CSR graph
+	 * @param people Indexes of the people of the group, each once
+	 * @param first Position in people of the first source
+	 */
+	MultiSourceBfs(CsrGraph g, int[] people, int first) {
+		int n = g.size();
+		this.people = people;
+		this.first = first;
+		count = Math.min(SOURCES, people.length - first);
+		seen = new long[n];
+		head = new int[n];
+		Arrays.fill(head, -1);
+		long[] front = new long[n], next = new long[n];
+		int[] frontList = new int[Math.min(n, SOURCES)], nextList = new int[16];
+		int frontSize = 0;
+
+		for (int i = 0; i < count; i++) {
+			int s = people[first + i];
+			seen[s] |= 1L << i;
+			front[s] |= 1L << i;
+			frontList[frontSize++] = s;
+		}
+
+		while (frontSize > 0 && !done()) {
+			int nextSize = 0;
+			for (int i = 0; i < frontSize; i++) {
+				int v = frontList[i];
+				long bits = front[v];
+				front[v] = 0;
+				for (int k = g.offsets[v]; k < g.offsets[v + 1]; k++) {
+					int w = g.neighbors[k];
+					long fresh = bits & ~seen[w];
+					if (fresh == 0)
+						continue;
+					if (next[w] == 0) {
+						if (nextSize == nextList.length)
+							nextList = Arrays.copyOf(nextList, Math.min(n, 2 * nextSize));
+						nextList[nextSize++] = w;
+					}
+					next[w] |= fresh;
+					seen[w] |= fresh;
+					record(w, fresh, v);
+				}
+			}
+			long[] t = front;
+			front = next;
+			next = t;
+			int[] l = frontList;
+			frontList = nextList;
+			nextList = l;
+			frontSize = nextSize;
+		}
+	}
+
+	/*
+	 * Whether every source has seen every later person of the group
+	 */
+	private boolean done() {
+		for (int j = first + 1; j < people.length; j++) {
+			int before = Math.min(j - first, count);
+			long wanted = before == SOURCES ? -1L : (1L << before) - 1;
+			if ((seen[people[j]] & wanted) != wanted)
+				return false;
+		}
+		return true;
+	}
+
+	private void record(int w, long bits, int from) {
+		if (records == recordBits.length) {
+			recordBits = Arrays.copyOf(recordBits, 2 * records);
+			recordFrom = Arrays.copyOf(recordFrom, 2 * records);
+			recordNext = Arrays.copyOf(recordNext, 2 * records);
+		}
+		recordBits[records] = bits;
+		recordFrom[records] = from;
+		recordNext[records] = head[w];
+		head[w] = records++;
+	}
+
+	/**
+	 * Shortest chain from a source to a person.
+	 *
+	 * @param i Position in people of the source, from first to first + 63
+	 * @param t Index of person
+	 * @return Indexes of the people on the chain, or null if t was not reached from the source
+	 */
+	int[] chain(int i, int t) {
+		long bit = 1L << (i - first);
+		int source = people[i];
+		if ((seen[t] & bit) == 0)
+			return null;
+		int length = 1;
+		for (int v = t; v != source; v = parent(v, bit))
+			length++;
+		int[] chain = new int[length];
+		for (int v = t; v != source; v = parent(v, bit))
+			chain[--length] = v;
+		chain[0] = source;
+		return chain;
+	}
+
+	private int parent(int v, long bit) {
+		int r = head[v];
+		while ((recordBits[r] & bit) == 0)
+			r = recordNext[r];
+		return recordFrom[r];
+	}
+}
@@ -0,0 +1,173 @@
+package structures;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * This class is an off-heap pool of fixed-size nodes, for linked structures that would
+ * otherwise put millions of small objects on the Java heap.
+ *
+ * Every node has the same MemoryLayout, a struct whose fields are read and written by
+ * byte offset, and is named by an int handle instead of a reference. Links between nodes
+ * are int fields holding handles, with NIL for none. Nodes live in chunks of 64K nodes
+ * allocated from a java.lang.foreign Arena, so the collector sees one small object per
+ * chunk, however many nodes there are.
+ *
+ * Nodes cannot be freed one by one. reset frees all of them at once and keeps the
+ * memory for reuse, and close hands the memory back to the operating system. A confined
+ * arena can only be used by the thread that created it. A shared arena can be read from
+ * any thread, but allocate is not synchronized, so nodes must be allocated by one thread
+ * at a time.
+ *
+ * Needs the java.lang.foreign API: Java 22 or later, or Java 21 with --enable-preview.
+ *
+ */
+public final class NodeArena implements AutoCloseable {
+
+	/**
+	 * Handle that refers to no node
+	 */
+	public static final int NIL = -1;
+
+	private static final int CHUNK_BITS = 16;
+	private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+	private final Arena arena;
+	private final MemoryLayout layout;
+	private final long stride;
+	private MemorySegment[] chunks = new MemorySegment[4];
+	private int chunkCount = 0, count = 0;
+
+	/**
+	 * Creates an empty arena.
+	 *
+	 * @param layout Layout of every node, typically a struct layout with named fields
+	 * @param shared True if other threads will read the nodes, false to confine the
+	 *        arena to the current thread
+	 */
+	public NodeArena(MemoryLayout layout, boolean shared) {
+		this.layout = layout;
+		stride = (layout.byteSize() + layout.byteAlignment() - 1) / layout.byteAlignment() * layout.byteAlignment();
+		arena = shared ? Arena.ofShared() : Arena.ofConfined();
+	}
+
+	/**
+	 * Byte offset of a field within a node
+	 *
+	 * @param field Name of field in the node layout
+	 * @return Offset, to be passed to the get and set methods
+	 * @throws IllegalArgumentException If the layout has no such field
+	 */
+	public long offset(String field)
+	throws IllegalArgumentException {
+		return layout.byteOffset(MemoryLayout.PathElement.groupElement(field));
+	}
+
+	/**
+	 * Allocates a node, with all fields zero.
+	 *
+	 * @return Handle of the new node
+	 */
+	public int allocate() {
+		if (count >>> CHUNK_BITS == chunkCount) {
+			if (chunkCount == chunks.length) {
+				MemorySegment[] more = new MemorySegment[chunks.length * 2];
+				System.arraycopy(chunks, 0, more, 0, chunkCount);
+				chunks = more;
+			}
+			if (chunks[chunkCount] == null)
+				chunks[chunkCount] = arena.allocate(stride << CHUNK_BITS, layout.byteAlignment());
+			else
+				chunks[chunkCount].fill((byte) 0);
+			chunkCount++;
+		}
+		return count++;
+	}
+
+	/**
+	 * Reads an int field of a node
+	 *
+	 * @param node Handle of node
+	 * @param offset Offset of field
+	 * @return Value of field
+	 */
+	public int getInt(int node, long offset) {
+		return chunks[node >>> CHUNK_BITS].get(ValueLayout.JAVA_INT, (node & CHUNK_MASK) * stride + offset);
+	}
+
+	/**
+	 * Writes an int field of a node
+	 *
+	 * @param node Handle of node
+	 * @param offset Offset of field
+	 * @param value New value
+	 */
+	public void setInt(int node, long offset, int value) {
+		chunks[node >>> CHUNK_BITS].set(ValueLayout.JAVA_INT, (node & CHUNK_MASK) * stride + offset, value);
+	}
+
+	/**
+	 * Reads a short field of a node
+	 *
+	 * @param node Handle of node
+	 * @param offset Offset of field
+	 * @return Value of field
+	 */
+	public short getShort(int node, long offset) {
+		return chunks[node >>> CHUNK_BITS].get(ValueLayout.JAVA_SHORT, (node & CHUNK_MASK) * stride + offset);
+	}
+
+	/**
+	 * Writes a short field of a node
+	 *
+	 * @param node Handle of node
+	 * @param offset Offset of field
+	 * @param value New value
+	 */
+	public void setShort(int node, long offset, short value) {
+		chunks[node >>> CHUNK_BITS].set(ValueLayout.JAVA_SHORT, (node & CHUNK_MASK) * stride + offset, value);
+	}
+
+	/**
+	 * Number of nodes allocated since the arena was created or last reset
+	 *
+	 * @return Node count
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Off-heap bytes held by the arena, including the unused part of the last chunk and
+	 * chunks kept by reset
+	 *
+	 * @return Size in bytes
+	 */
+	public long bytes() {
+		long bytes = 0;
+		for (MemorySegment chunk : chunks)
+			if (chunk != null)
+				bytes += chunk.byteSize();
+		return bytes;
+	}
+
+	/**
+	 * Frees all nodes at once. The memory is kept and reused by later allocations, and
+	 * every handle handed out so far becomes invalid.
+	 */
+	public void reset() {
+		count = 0;
+		chunkCount = 0;
+	}
+
+	/**
+	 * Frees all nodes and hands their memory back. The arena cannot be used afterwards.
+	 */
+	public void close() {
+		arena.close();
+		chunks = new MemorySegment[1];
+		chunkCount = count = 0;
+	}
+}
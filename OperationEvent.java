@@ -0,0 +1,32 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for one instrumented data structure operation, committed by Metrics.Probe.
+ * Its duration is the latency of the call, so recordings line it up with the GC, JIT and
+ * allocation events of the same moment.
+ *
+ */
+@Name("metrics.Operation")
+@Label("Data Structure Operation")
+@Category("Data Structures")
+@Description("One call of an instrumented data structure operation")
+class OperationEvent extends Event {
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Work")
+	@Description("Digits, nodes, stack entries or people processed by the call")
+	long work;
+
+	@Label("Allocated")
+	@DataAmount
+	long allocated;
+}
@@ -0,0 +1,222 @@
+package friends;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * This class runs a whole-graph breadth-first search on all cores, switching direction
+ * level by level (Beamer et al.).
+ *
+ * The search is level-synchronous, and every level is split into blocks of 64-person
+ * bitmap words that run in a ForkJoinPool. Small frontiers go top-down: every frontier
+ * person claims their unvisited friends with a compare-and-set on the visited bitmap.
+ * Once the frontier's friendships outnumber a fraction of those of the unvisited people,
+ * it goes bottom-up instead: every unvisited person looks for any friend on the frontier
+ * and stops at the first one, which skips most of the edges of the big middle levels.
+ * In bottom-up steps each block only writes its own bitmap words, so no atomics are needed.
+ *
+ */
+public class ParallelBfs {
+
+	// switch to bottom-up when frontier edges > unvisited edges / ALPHA
+	private static final int ALPHA = 14;
+	// switch back to top-down when frontier people < all people / BETA
+	private static final int BETA = 24;
+	// bitmap words per parallel block
+	private static final int BLOCK = 64;
+
+	private final int[] depth;
+	private final ArrayList<Integer> levelSizes = new ArrayList<Integer>();
+	private int topDownSteps = 0, bottomUpSteps = 0;
+
+	/**
+	 * Runs the search on the common ForkJoinPool.
+	 *
+	 * @param g CSR graph
+	 * @param source Index of person to start from
+	 */
+	public ParallelBfs(CsrGraph g, int source) {
+		this(g, source, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Runs the search.
+	 *
+	 * @param g CSR graph
+	 * @param source Index of person to start from
+	 * @param pool Pool to run on
+	 */
+	public ParallelBfs(CsrGraph g, int source, ForkJoinPool pool) {
+		int n = g.size(), words = (n + 63) >>> 6, blocks = (words + BLOCK - 1) / BLOCK;
+		depth = new int[n];
+		Arrays.fill(depth, -1);
+		AtomicLongArray visited = new AtomicLongArray(words);
+		AtomicLongArray front = new AtomicLongArray(words), next = new AtomicLongArray(words);
+
+		depth[source] = 0;
+		visited.set(source >>> 6, 1L << source);
+		front.set(source >>> 6, 1L << source);
+		long frontSize = 1, frontEdges = g.degree(source), unvisitedEdges = g.neighbors.length - frontEdges;
+		boolean bottomUp = false;
+		levelSizes.add(1);
+
+		for (int level = 0; frontSize > 0; level++) {
+			if (!bottomUp && frontEdges > unvisitedEdges / ALPHA)
+				bottomUp = true;
+			else if (bottomUp && frontSize < n / BETA)
+				bottomUp = false;
+
+			LongAdder size = new LongAdder(), edges = new LongAdder();
+			AtomicLongArray from = front, to = next;
+			int d = level + 1;
+			if (bottomUp) {
+				bottomUpSteps++;
+				pool.submit(() -> IntStream.range(0, blocks).parallel().forEach(b ->
+					bottomUp(g, b, words, d, from, to, visited, size, edges))).join();
+			}
+			else {
+				topDownSteps++;
+				pool.submit(() -> IntStream.range(0, blocks).parallel().forEach(b ->
+					topDown(g, b, words, d, from, to, visited, size, edges))).join();
+			}
+
+			frontSize = size.sum();
+			frontEdges = edges.sum();
+			unvisitedEdges -= frontEdges;
+			if (frontSize > 0)
+				levelSizes.add((int) frontSize);
+
+			// the old frontier is cleared and becomes the next one
+			for (int w = 0; w < words; w++)
+				front.set(w, 0);
+			front = next;
+			next = from;
+		}
+	}
+
+	/*
+	 * Every frontier person in block b claims their unvisited friends.
+	 */
+	private void topDown(CsrGraph g, int b, int words, int d, AtomicLongArray front, AtomicLongArray next,
+			AtomicLongArray visited, LongAdder size, LongAdder edges) {
+		long found = 0, foundEdges = 0;
+		for (int w = b * BLOCK, end = Math.min(words, w + BLOCK); w < end; w++) {
+			long bits = front.get(w);
+			while (bits != 0) {
+				int v = (w << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				for (int k = g.offsets[v]; k < g.offsets[v + 1]; k++) {
+					int u = g.neighbors[k];
+					if (claim(visited, u)) {
+						depth[u] = d;
+						next.getAndAccumulate(u >>> 6, 1L << u, (x, y) -> x | y);
+						found++;
+						foundEdges += g.degree(u);
+					}
+				}
+			}
+		}
+		size.add(found);
+		edges.add(foundEdges);
+	}
+
+	/*
+	 * Every unvisited person in block b looks for a friend on the frontier. Only this
+	 * block writes the visited and next words it covers.
+	 */
+	private void bottomUp(CsrGraph g, int b, int words, int d, AtomicLongArray front, AtomicLongArray next,
+			AtomicLongArray visited, LongAdder size, LongAdder edges) {
+		int n = g.size();
+		long found = 0, foundEdges = 0;
+		for (int w = b * BLOCK, end = Math.min(words, w + BLOCK); w < end; w++) {
+			long seen = visited.get(w), add = 0;
+			for (int v = w << 6, last = Math.min(n, v + 64); v < last; v++) {
+				if ((seen & (1L << v)) != 0)
+					continue;
+				for (int k = g.offsets[v]; k < g.offsets[v + 1]; k++) {
+					int u = g.neighbors[k];
+					if ((front.get(u >>> 6) & (1L << u)) != 0) {
+						depth[v] = d;
+						add |= 1L << v;
+						found++;
+						foundEdges += g.degree(v);
+						break;
+					}
+				}
+			}
+			if (add != 0) {
+				visited.set(w, seen | add);
+				next.set(w, add);
+			}
+		}
+		size.add(found);
+		edges.add(foundEdges);
+	}
+
+	/*
+	 * Sets v's visited bit. True if this call set it, false if it was already set.
+	 */
+	private static boolean claim(AtomicLongArray visited, int v) {
+		int w = v >>> 6;
+		long bit = 1L << v;
+		while (true) {
+			long old = visited.get(w);
+			if ((old & bit) != 0)
+				return false;
+			if (visited.compareAndSet(w, old, old | bit))
+				return true;
+		}
+	}
+
+	/**
+	 * Distance of a person from the source
+	 *
+	 * @param v Index of person
+	 * @return Number of friendships on the shortest chain from the source, or -1 if v
+	 *         cannot be reached
+	 */
+	public int depth(int v) {
+		return depth[v];
+	}
+
+	/**
+	 * Number of people at each distance from the source: element i is the number of
+	 * people i friendships away, starting with the source itself at 0.
+	 *
+	 * @return Level sizes
+	 */
+	public ArrayList<Integer> levelSizes() {
+		return new ArrayList<Integer>(levelSizes);
+	}
+
+	/**
+	 * Eccentricity of the source, i.e. the distance to the farthest reachable person
+	 *
+	 * @return Eccentricity
+	 */
+	public int eccentricity() {
+		return levelSizes.size() - 1;
+	}
+
+	/**
+	 * Number of levels that were searched top-down
+	 *
+	 * @return Top-down step count
+	 */
+	public int topDownSteps() {
+		return topDownSteps;
+	}
+
+	/**
+	 * Number of levels that were searched bottom-up
+	 *
+	 * @return Bottom-up step count
+	 */
+	public int bottomUpSteps() {
+		return bottomUpSteps;
+	}
+}
@@ -0,0 +1,182 @@
+package friends;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * This class finds connected components of a graph on all cores, with a lock-free
+ * union-find.
+ *
+ * Every person has a label, and only friendships between two people with the same label
+ * are followed: labelling students by school and everyone else -1 gives the cliques of
+ * every school at once, in a single pass over the friendships. The pass is split into
+ * blocks of people that run in a ForkJoinPool. Unions link the larger root under the
+ * smaller one with a compare-and-set, so no locks are taken, parent chains can never
+ * form a cycle, and the root of each component ends up being its smallest index.
+ * Finds halve the path as they go.
+ *
+ */
+public class ParallelComponents {
+
+	private static final int BLOCK = 4096;
+
+	private final int[] label;
+	private final int[] root;
+
+	/**
+	 * Finds the components of a graph on the common ForkJoinPool.
+	 *
+	 * @param g CSR graph
+	 * @param label Label of every person, -1 for people to leave out
+	 */
+	public ParallelComponents(CsrGraph g, int[] label) {
+		this(g, label, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Finds the components of the part of a graph made of the people that pass a test.
+	 *
+	 * @param g CSR graph
+	 * @param include Test for the indexes of the people to keep
+	 */
+	public ParallelComponents(CsrGraph g, IntPredicate include) {
+		this(g, labels(g.size(), include), ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Finds the components of a graph.
+	 *
+	 * @param g CSR graph
+	 * @param label Label of every person, -1 for people to leave out
+	 * @param pool Pool to run on
+	 */
+	public ParallelComponents(CsrGraph g, int[] label, ForkJoinPool pool) {
+		int n = g.size();
+		this.label = label;
+		AtomicIntegerArray parent = new AtomicIntegerArray(n);
+		for (int v = 0; v < n; v++)
+			parent.set(v, v);
+
+		int blocks = (n + BLOCK - 1) / BLOCK;
+		pool.submit(() -> IntStream.range(0, blocks).parallel().forEach(b -> {
+			for (int v = b * BLOCK, end = Math.min(n, v + BLOCK); v < end; v++) {
+				int l = label[v];
+				if (l < 0)
+					continue;
+				for (int k = g.offsets[v]; k < g.offsets[v + 1]; k++) {
+					int w = g.neighbors[k];
+					if (w > v && label[w] == l)
+						union(parent, v, w);
+				}
+			}
+		})).join();
+
+		root = new int[n];
+		pool.submit(() -> IntStream.range(0, blocks).parallel().forEach(b -> {
+			for (int v = b * BLOCK, end = Math.min(n, v + BLOCK); v < end; v++)
+				root[v] = label[v] < 0 ? -1 : find(parent, v);
+		})).join();
+	}
+
+	private static int[] labels(int n, IntPredicate include) {
+		int[] label = new int[n];
+		for (int v = 0; v < n; v++)
+			label[v] = include.test(v) ? 0 : -1;
+		return label;
+	}
+
+	private static int find(AtomicIntegerArray parent, int v) {
+		int p;
+		while ((p = parent.get(v)) != v) {
+			int gp = parent.get(p);
+			if (gp != p)
+				parent.compareAndSet(v, p, gp);
+			v = p;
+		}
+		return v;
+	}
+
+	private static void union(AtomicIntegerArray parent, int a, int b) {
+		while (true) {
+			a = find(parent, a);
+			b = find(parent, b);
+			if (a == b)
+				return;
+			if (a > b) {
+				int t = a;
+				a = b;
+				b = t;
+			}
+			if (parent.compareAndSet(b, b, a))
+				return;
+		}
+	}
+
+	/**
+	 * Root of the component of a person, which is the smallest index in it
+	 *
+	 * @param v Index of person
+	 * @return Root of v's component, or -1 if v was left out
+	 */
+	public int root(int v) {
+		return root[v];
+	}
+
+	/**
+	 * Returns all the components, grouped by label.
+	 *
+	 * @param labels Number of labels, i.e. one more than the largest label
+	 * @return For each label, the list of its components, each with the indexes of its
+	 *         people in increasing order. Components are ordered by their smallest index.
+	 */
+	public ArrayList<ArrayList<int[]>> componentsByLabel(int labels) {
+		ArrayList<ArrayList<int[]>> result = new ArrayList<ArrayList<int[]>>(labels);
+		for (int l = 0; l < labels; l++)
+			result.add(new ArrayList<int[]>());
+		group(-1, result);
+		return result;
+	}
+
+	/**
+	 * Returns the components of one label.
+	 *
+	 * @param l Label
+	 * @return Components with label l, each with the indexes of its people in increasing
+	 *         order. Components are ordered by their smallest index.
+	 */
+	public ArrayList<int[]> components(int l) {
+		ArrayList<ArrayList<int[]>> result = new ArrayList<ArrayList<int[]>>(1);
+		result.add(new ArrayList<int[]>());
+		group(l, result);
+		return result.get(0);
+	}
+
+	/*
+	 * Fills in the members of every component with label only, or of every component if
+	 * only is -1. Components go to byLabel.get(0) for a single label, and to
+	 * byLabel.get(label) otherwise.
+	 */
+	private void group(int only, ArrayList<ArrayList<int[]>> byLabel) {
+		int n = root.length;
+		int[] size = new int[n];
+		for (int v = 0; v < n; v++)
+			if (root[v] >= 0 && (only < 0 || label[v] == only))
+				size[root[v]]++;
+
+		int[][] members = new int[n][];
+		int[] fill = new int[n];
+		for (int v = 0; v < n; v++) {
+			int r = root[v];
+			if (r < 0 || (only >= 0 && label[v] != only))
+				continue;
+			if (r == v) {
+				members[v] = new int[size[v]];
+				byLabel.get(only < 0 ? label[v] : 0).add(members[v]);
+			}
+			members[r][fill[r]++] = v;
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is the default metrics sink. It keeps, per operation, the number of calls,
+ * the total bytes allocated, and histograms of latency and work.
+ *
+ */
+public class Recorder implements Metrics.Sink {
+
+	/**
+	 * Everything recorded for one operation
+	 */
+	public static final class Stats {
+		private final LongAdder calls = new LongAdder(), allocated = new LongAdder();
+		private final Histogram latency = new Histogram(), work = new Histogram();
+
+		/**
+		 * Number of calls
+		 *
+		 * @return Call count
+		 */
+		public long calls() {
+			return calls.sum();
+		}
+
+		/**
+		 * Bytes allocated by all calls, not counting calls where the JVM could not tell
+		 *
+		 * @return Allocated bytes
+		 */
+		public long allocatedBytes() {
+			return allocated.sum();
+		}
+
+		/**
+		 * Latency of the calls, in nanoseconds
+		 *
+		 * @return Latency histogram
+		 */
+		public Histogram latency() {
+			return latency;
+		}
+
+		/**
+		 * Work done by the calls, in units of the operation
+		 *
+		 * @return Work histogram
+		 */
+		public Histogram work() {
+			return work;
+		}
+	}
+
+	private final ConcurrentHashMap<String, Stats> stats = new ConcurrentHashMap<String, Stats>();
+
+	public void record(String operation, long nanos, long allocatedBytes, long work) {
+		Stats s = stats.computeIfAbsent(operation, k -> new Stats());
+		s.calls.increment();
+		if (allocatedBytes >= 0)
+			s.allocated.add(allocatedBytes);
+		s.latency.record(nanos);
+		s.work.record(work);
+	}
+
+	/**
+	 * Everything recorded for an operation
+	 *
+	 * @param operation Name of operation
+	 * @return Stats, or null if the operation was never called
+	 */
+	public Stats stats(String operation) {
+		return stats.get(operation);
+	}
+
+	/**
+	 * Names of all operations recorded so far, sorted
+	 *
+	 * @return Operation names
+	 */
+	public ArrayList<String> operations() {
+		ArrayList<String> names = new ArrayList<String>(stats.keySet());
+		Collections.sort(names);
+		return names;
+	}
+
+	/**
+	 * Forgets everything recorded so far.
+	 */
+	public void clear() {
+		stats.clear();
+	}
+}
@@ -0,0 +1,58 @@
+package friends;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * This interface carries batches of ints between the shards of a ShardedGraph, one
+ * superstep at a time.
+ *
+ * In each superstep, every shard sends any number of batches and then calls flush
+ * exactly once. receive for a shard returns once every shard has flushed, with all the
+ * batches sent to it in that superstep. Batches sent by one shard to another arrive in
+ * the order they were sent. Different shards may send at the same time, but each shard
+ * sends from one thread at a time.
+ *
+ */
+public interface ShardTransport extends Closeable {
+
+	/**
+	 * Number of shards this transport connects
+	 *
+	 * @return Shard count
+	 */
+	int shards();
+
+	/**
+	 * Sends a batch. The caller may reuse the array as soon as this returns.
+	 *
+	 * @param from Sending shard
+	 * @param to Receiving shard
+	 * @param batch Array holding the batch
+	 * @param length Number of ints to send from the start of the array
+	 * @throws IOException If the batch cannot be sent
+	 */
+	void send(int from, int to, int[] batch, int length)
+	throws IOException;
+
+	/**
+	 * Marks the end of a shard's sends for the current superstep.
+	 *
+	 * @param from Sending shard
+	 * @throws IOException If the mark cannot be sent
+	 */
+	void flush(int from)
+	throws IOException;
+
+	/**
+	 * Waits until every shard has flushed, and returns the batches sent to a shard in
+	 * the current superstep.
+	 *
+	 * @param to Receiving shard
+	 * @return Batches, each an array of exactly the length sent
+	 * @throws IOException If the batches cannot be received
+	 */
+	ArrayList<int[]> receive(int to)
+	throws IOException;
+}
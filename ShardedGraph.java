@@ -0,0 +1,461 @@
+package friends;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * This class is a friends graph split into shards by a hash of each person's index, so
+ * that no shard has to hold the whole graph.
+ *
+ * A shard holds the people it owns, their names and schools, and their friend lists in
+ * CSR form (see CsrGraph), with friends named by global index. Built from a MappedGraph,
+ * each shard reads only the part of the file about its own people. Queries run as
+ * bulk-synchronous computations: in each superstep every shard works on its own people
+ * in parallel, and sends what its neighbors' owners need to know (a frontier person and
+ * their parent, or a component label) in batches through a ShardTransport. The next
+ * superstep starts once every shard has received its batches. Only the small per-step
+ * totals, like the size of the next frontier, are gathered by the coordinating thread.
+ * Queries share the state of the shards, so they run one at a time.
+ *
+ */
+public class ShardedGraph {
+
+	// ints per batch, two per message
+	private static final int BATCH = 4096;
+	private static final int UNSEEN = -2;
+
+	/**
+	 * The people owned by one shard, with their friend lists and query state.
+	 */
+	private static final class Shard {
+		final int id;
+		final int[] vertices, offsets, neighbors, school;
+		final String[] names;
+		final HashMap<String, Integer> index;
+
+		// search state, by local index
+		int[] parent, label, frontier;
+		boolean[] changed;
+		int frontierSize, updates;
+
+		// outgoing batches, by receiving shard
+		final int[][] out;
+		final int[] outSize;
+
+		/*
+		 * Reads the people that shard id owns out of g, and nothing of anyone else: their
+		 * friend lists, school ids and names
+		 */
+		Shard(int id, int shards, Adjacency g, IntUnaryOperator schoolOf, IntFunction<String> nameOf) {
+			this.id = id;
+			int people = g.size(), n = 0;
+			for (int v = 0; v < people; v++)
+				if (owner(v, shards) == id)
+					n++;
+			vertices = new int[n];
+			offsets = new int[n + 1];
+			for (int v = 0, i = 0; v < people; v++) {
+				if (owner(v, shards) == id) {
+					vertices[i] = v;
+					offsets[i + 1] = offsets[i] + g.degree(v);
+					i++;
+				}
+			}
+			neighbors = new int[offsets[n]];
+			school = new int[n];
+			names = new String[n];
+			index = new HashMap<String, Integer>(n * 2);
+			int[] friends = new int[16];
+			for (int i = 0; i < n; i++) {
+				int v = vertices[i], degree = offsets[i + 1] - offsets[i];
+				if (degree > friends.length)
+					friends = new int[Math.max(degree, 2 * friends.length)];
+				g.friends(v, friends);
+				System.arraycopy(friends, 0, neighbors, offsets[i], degree);
+				school[i] = schoolOf.applyAsInt(v);
+				names[i] = nameOf.apply(v);
+				index.put(names[i], v);
+			}
+			parent = new int[n];
+			label = new int[n];
+			frontier = new int[n];
+			changed = new boolean[n];
+			out = new int[shards][BATCH];
+			outSize = new int[shards];
+		}
+
+		int local(int v) {
+			return Arrays.binarySearch(vertices, v);
+		}
+
+		void emit(ShardTransport t, int to, int a, int b)
+		throws IOException {
+			if (outSize[to] + 2 > BATCH) {
+				t.send(id, to, out[to], outSize[to]);
+				outSize[to] = 0;
+			}
+			out[to][outSize[to]++] = a;
+			out[to][outSize[to]++] = b;
+		}
+
+		void flush(ShardTransport t)
+		throws IOException {
+			for (int to = 0; to < out.length; to++) {
+				if (outSize[to] > 0)
+					t.send(id, to, out[to], outSize[to]);
+				outSize[to] = 0;
+			}
+			t.flush(id);
+		}
+	}
+
+	/**
+	 * Work done by one shard in a superstep
+	 */
+	private interface Step {
+		void run(Shard s) throws IOException;
+	}
+
+	private final Shard[] shards;
+	private final String[] schools;
+	private final ShardTransport transport;
+	private final ForkJoinPool pool;
+	private final int people;
+
+	/**
+	 * Splits a mapped graph file into as many shards as the transport connects. Each shard
+	 * reads only its own people's part of the file, so the whole graph is never on the
+	 * heap.
+	 *
+	 * @param g Mapped graph to split
+	 * @param transport Transport between the shards
+	 */
+	public ShardedGraph(MappedGraph g, ShardTransport transport) {
+		this(g, transport, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Splits a mapped graph file into as many shards as the transport connects. Each shard
+	 * reads only its own people's part of the file, so the whole graph is never on the
+	 * heap.
+	 *
+	 * @param g Mapped graph to split
+	 * @param transport Transport between the shards
+	 * @param pool Pool that runs the shards of each superstep
+	 */
+	public ShardedGraph(MappedGraph g, ShardTransport transport, ForkJoinPool pool) {
+		this(g.size(), g.schools(), transport, pool);
+		for (int s = 0; s < shards.length; s++)
+			shards[s] = new Shard(s, shards.length, g, g::schoolId, g::name);
+	}
+
+	/**
+	 * Splits a graph into as many shards as the transport connects. The graph is already
+	 * whole on the heap, so this is meant for tests and small graphs.
+	 *
+	 * @param g CSR graph to split
+	 * @param transport Transport between the shards
+	 */
+	public ShardedGraph(CsrGraph g, ShardTransport transport) {
+		this(g, transport, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Splits a graph into as many shards as the transport connects. The graph is already
+	 * whole on the heap, so this is meant for tests and small graphs.
+	 *
+	 * @param g CSR graph to split
+	 * @param transport Transport between the shards
+	 * @param pool Pool that runs the shards of each superstep
+	 */
+	public ShardedGraph(CsrGraph g, ShardTransport transport, ForkJoinPool pool) {
+		this(g.size(), g.schools, transport, pool);
+		for (int s = 0; s < shards.length; s++)
+			shards[s] = new Shard(s, shards.length, g, v -> g.school[v], v -> g.names[v]);
+	}
+
+	/**
+	 * Splits a graph into as many shards as the transport connects. The graph is already
+	 * whole on the heap, so this is meant for tests and small graphs.
+	 *
+	 * @param g Graph to split
+	 * @param transport Transport between the shards
+	 */
+	public ShardedGraph(Graph g, ShardTransport transport) {
+		this(new CsrGraph(g), transport);
+	}
+
+	private ShardedGraph(int people, String[] schools, ShardTransport transport, ForkJoinPool pool) {
+		this.people = people;
+		this.schools = schools;
+		this.transport = transport;
+		this.pool = pool;
+		shards = new Shard[transport.shards()];
+	}
+
+	/*
+	 * Shard that owns person v, from a hash of v so that neighboring indexes spread out
+	 */
+	static int owner(int v, int shards) {
+		int h = v * 0x9E3779B9;
+		h ^= h >>> 16;
+		return (h & 0x7fffffff) % shards;
+	}
+
+	private Shard shard(int v) {
+		return shards[owner(v, shards.length)];
+	}
+
+	/*
+	 * Runs one superstep: step on every shard in parallel, then waits for all of them
+	 */
+	private void superstep(Step step)
+	throws IOException {
+		try {
+			pool.submit(() -> IntStream.range(0, shards.length).parallel().forEach(s -> {
+				try {
+					step.run(shards[s]);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			})).join();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Number of people in the graph
+	 *
+	 * @return Number of people
+	 */
+	public int size() {
+		return people;
+	}
+
+	/**
+	 * Number of shards
+	 *
+	 * @return Shard count
+	 */
+	public int shardCount() {
+		return shards.length;
+	}
+
+	/**
+	 * Number of people owned by a shard
+	 *
+	 * @param s Index of shard
+	 * @return Number of people
+	 */
+	public int shardSize(int s) {
+		return shards[s].vertices.length;
+	}
+
+	/**
+	 * Index of a person, looked up in every shard
+	 *
+	 * @param name Name of person
+	 * @return Index of person, or -1 if there is no one by that name
+	 */
+	public int indexOf(String name) {
+		for (Shard s : shards) {
+			Integer v = s.index.get(name);
+			if (v != null)
+				return v;
+		}
+		return -1;
+	}
+
+	/**
+	 * Name of a person
+	 *
+	 * @param v Index of person
+	 * @return Name
+	 */
+	public String name(int v) {
+		Shard s = shard(v);
+		return s.names[s.local(v)];
+	}
+
+	/**
+	 * Finds the shortest chain of people from p1 to p2, with a breadth-first search that
+	 * advances one level per superstep. Same as Friends.shortestChain.
+	 *
+	 * @param p1 Person with whom the chain originates
+	 * @param p2 Person at whom the chain terminates
+	 * @return The shortest chain from p1 to p2. Null if there is no
+	 *         path from p1 to p2
+	 * @throws IOException If the transport fails
+	 */
+	public synchronized ArrayList<String> shortestChain(String p1, String p2)
+	throws IOException {
+		int source = indexOf(p1), dest = indexOf(p2);
+		if (source == -1 || dest == -1)
+			return null;
+
+		for (Shard s : shards) {
+			Arrays.fill(s.parent, UNSEEN);
+			s.frontierSize = 0;
+		}
+		Shard first = shard(source), last = shard(dest);
+		int from = first.local(source), to = last.local(dest);
+		first.parent[from] = -1;
+		first.frontier[first.frontierSize++] = from;
+
+		int k = shards.length;
+		while (last.parent[to] == UNSEEN) {
+			// every frontier person tells the owner of each friend: (friend, parent)
+			superstep(s -> {
+				for (int i = 0; i < s.frontierSize; i++) {
+					int v = s.frontier[i];
+					for (int e = s.offsets[v]; e < s.offsets[v + 1]; e++) {
+						int w = s.neighbors[e];
+						s.emit(transport, owner(w, k), w, s.vertices[v]);
+					}
+				}
+				s.flush(transport);
+			});
+			// owners put the people they hear about for the first time on the next frontier
+			superstep(s -> {
+				s.frontierSize = 0;
+				for (int[] batch : transport.receive(s.id)) {
+					for (int i = 0; i < batch.length; i += 2) {
+						int w = s.local(batch[i]);
+						if (s.parent[w] == UNSEEN) {
+							s.parent[w] = batch[i + 1];
+							s.frontier[s.frontierSize++] = w;
+						}
+					}
+				}
+			});
+			long next = 0;
+			for (Shard s : shards)
+				next += s.frontierSize;
+			if (next == 0)
+				break;
+		}
+		if (last.parent[to] == UNSEEN)
+			return null;
+
+		ArrayList<String> chain = new ArrayList<String>();
+		for (int v = dest; v != -1; ) {
+			Shard s = shard(v);
+			int i = s.local(v);
+			chain.add(s.names[i]);
+			v = s.parent[i];
+		}
+		Collections.reverse(chain);
+		return chain;
+	}
+
+	/**
+	 * Finds the connected components of the graph, by propagating the smallest index in
+	 * each component to everyone in it, one friendship per superstep.
+	 *
+	 * @return Array list of component array lists, each ordered by index, and ordered by
+	 *         their first person
+	 * @throws IOException If the transport fails
+	 */
+	public ArrayList<ArrayList<String>> components()
+	throws IOException {
+		return components(-2);
+	}
+
+	/**
+	 * Finds all cliques of students in a given school, like Friends.cliques, as the
+	 * components of the students of that school.
+	 *
+	 * @param school Name of school
+	 * @return Array list of clique array lists, each ordered by index, and ordered by
+	 *         their first person. Empty if there is no student in the given school
+	 * @throws IOException If the transport fails
+	 */
+	public ArrayList<ArrayList<String>> cliques(String school)
+	throws IOException {
+		int id = -1;
+		for (int s = 0; s < schools.length; s++)
+			if (schools[s].equals(school))
+				id = s;
+		if (id == -1)
+			return new ArrayList<ArrayList<String>>();
+		return components(id);
+	}
+
+	/*
+	 * Components of the people of school id, or of everyone if id is -2
+	 */
+	private synchronized ArrayList<ArrayList<String>> components(int id)
+	throws IOException {
+		for (Shard s : shards) {
+			for (int i = 0; i < s.vertices.length; i++) {
+				boolean member = id == -2 || s.school[i] == id;
+				s.label[i] = member ? s.vertices[i] : -1;
+				s.changed[i] = member;
+			}
+		}
+
+		int k = shards.length;
+		while (true) {
+			// everyone whose label changed tells the owner of each friend: (friend, label)
+			superstep(s -> {
+				for (int v = 0; v < s.vertices.length; v++) {
+					if (!s.changed[v])
+						continue;
+					s.changed[v] = false;
+					for (int e = s.offsets[v]; e < s.offsets[v + 1]; e++) {
+						int w = s.neighbors[e];
+						s.emit(transport, owner(w, k), w, s.label[v]);
+					}
+				}
+				s.flush(transport);
+			});
+			// owners keep the smallest label they hear of
+			superstep(s -> {
+				s.updates = 0;
+				for (int[] batch : transport.receive(s.id)) {
+					for (int i = 0; i < batch.length; i += 2) {
+						int w = s.local(batch[i]);
+						if (s.label[w] != -1 && batch[i + 1] < s.label[w]) {
+							s.label[w] = batch[i + 1];
+							if (!s.changed[w]) {
+								s.changed[w] = true;
+								s.updates++;
+							}
+						}
+					}
+				}
+			});
+			long updates = 0;
+			for (Shard s : shards)
+				updates += s.updates;
+			if (updates == 0)
+				break;
+		}
+
+		// gather the labels, in order of index
+		LinkedHashMap<Integer, ArrayList<String>> groups = new LinkedHashMap<Integer, ArrayList<String>>();
+		for (int v = 0; v < people; v++) {
+			Shard s = shard(v);
+			int i = s.local(v);
+			if (s.label[i] == -1)
+				continue;
+			ArrayList<String> group = groups.get(s.label[i]);
+			if (group == null) {
+				group = new ArrayList<String>();
+				groups.put(s.label[i], group);
+			}
+			group.add(s.names[i]);
+		}
+		return new ArrayList<ArrayList<String>>(groups.values());
+	}
+}
@@ -0,0 +1,178 @@
+package friends;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * This class is a driver that checks a ShardedGraph against a plain breadth-first search
+ * over the Friend lists of a Graph, which shares no code with either.
+ * It splits one random graph over each transport, and once more from a mapped graph file
+ * with each shard reading only its own people, and compares the lengths of the
+ * chains that shortestChain finds, including between a person and themselves, between
+ * people who are not connected and with a name that is not in the graph, and the cliques
+ * of every school and of a school that nobody attends.
+ *
+ * Usage: java friends.ShardedGraphCheck [people [friendships [shards [queries [seed]]]]]
+ *
+ * The default graph has fewer friendships than people, so that it falls apart into many
+ * components and a good share of the random pairs are not connected.
+ *
+ */
+public class ShardedGraphCheck {
+
+	public static void main(String[] args)
+	throws IOException {
+		int people = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+		int friendships = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int shards = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		int queries = args.length > 3 ? Integer.parseInt(args[3]) : 300;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+
+		Graph g = CsrGraphBenchmark.randomGraph(people, friendships, seed);
+		CsrGraph csr = new CsrGraph(g);
+
+		Random random = new Random(seed + 1);
+		ArrayList<String[]> pairs = new ArrayList<String[]>();
+		for (int q = 0; q < queries; q++) {
+			String p = "p" + random.nextInt(people);
+			pairs.add(new String[] { p, q % 10 == 0 ? p : "p" + random.nextInt(people) });
+		}
+		pairs.add(new String[] { "p0", "nobody" });
+
+		ArrayList<String> schools = new ArrayList<String>();
+		for (int s = 0; s < 10; s++)
+			schools.add("school" + s);
+		schools.add("nowhere");
+
+		try (ShardTransport inProcess = new InProcessTransport(shards)) {
+			check("in-process", new ShardedGraph(csr, inProcess), g, csr, pairs, schools);
+		}
+		try (ShardTransport loopback = new LoopbackTransport(shards)) {
+			check("loopback", new ShardedGraph(csr, loopback), g, csr, pairs, schools);
+		}
+		Path file = Files.createTempFile("sharded", ".graph");
+		try (ShardTransport inProcess = new InProcessTransport(shards)) {
+			MappedGraph.write(csr, file);
+			check("mapped", new ShardedGraph(MappedGraph.open(file), inProcess), g, csr, pairs, schools);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static void check(String name, ShardedGraph sharded, Graph g, CsrGraph csr,
+			ArrayList<String[]> pairs, ArrayList<String> schools)
+	throws IOException {
+		int connected = 0, unconnected = 0;
+		for (String[] pair : pairs) {
+			int expected = length(g, pair[0], pair[1]);
+			ArrayList<String> actual = sharded.shortestChain(pair[0], pair[1]);
+			if (expected == 0) {
+				if (actual != null)
+					fail(name, "chain where there is none", pair);
+				unconnected++;
+				continue;
+			}
+			if (actual == null || actual.size() != expected)
+				fail(name, "chain of length " + (actual == null ? 0 : actual.size()) + ", not " + expected, pair);
+			if (!actual.get(0).equals(pair[0]) || !actual.get(actual.size() - 1).equals(pair[1]))
+				fail(name, "chain with the wrong ends", pair);
+			for (int i = 0; i + 1 < actual.size(); i++) {
+				int v = csr.indexOf(actual.get(i)), w = csr.indexOf(actual.get(i + 1));
+				boolean friends = false;
+				for (int k = csr.offsets[v]; k < csr.offsets[v + 1] && !friends; k++)
+					friends = csr.neighbors[k] == w;
+				if (!friends)
+					fail(name, actual.get(i) + " and " + actual.get(i + 1) + " are not friends", pair);
+			}
+			connected++;
+		}
+
+		for (String school : schools) {
+			HashSet<TreeSet<String>> expected = cliques(g, school);
+			HashSet<TreeSet<String>> actual = cliqueSet(sharded.cliques(school));
+			if (!expected.equals(actual))
+				fail(name, "cliques differ", new String[] { school });
+		}
+		System.out.printf("%s ok: %d chains, %d unconnected, %d schools%n", name, connected, unconnected, schools.size());
+	}
+
+	/*
+	 * Number of people on a shortest chain from p1 to p2, 0 if there is none
+	 */
+	private static int length(Graph g, String p1, String p2) {
+		Integer source = g.map.get(p1), dest = g.map.get(p2);
+		if (source == null || dest == null)
+			return 0;
+		int[] distance = new int[g.members.length];
+		Arrays.fill(distance, -1);
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		distance[source] = 0;
+		queue.add(source);
+		while (!queue.isEmpty()) {
+			int v = queue.poll();
+			if (v == dest)
+				return distance[v] + 1;
+			for (Friend f = g.members[v].first; f != null; f = f.next) {
+				if (distance[f.fnum] == -1) {
+					distance[f.fnum] = distance[v] + 1;
+					queue.add(f.fnum);
+				}
+			}
+		}
+		return 0;
+	}
+
+	/*
+	 * Cliques of a school as sets of names, in no order: the students of the school
+	 * reached from each other through friends at the same school
+	 */
+	private static HashSet<TreeSet<String>> cliques(Graph g, String school) {
+		boolean[] seen = new boolean[g.members.length];
+		HashSet<TreeSet<String>> set = new HashSet<TreeSet<String>>();
+		for (int s = 0; s < g.members.length; s++) {
+			if (seen[s] || !attends(g.members[s], school))
+				continue;
+			TreeSet<String> clique = new TreeSet<String>();
+			ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+			seen[s] = true;
+			queue.add(s);
+			while (!queue.isEmpty()) {
+				int v = queue.poll();
+				clique.add(g.members[v].name);
+				for (Friend f = g.members[v].first; f != null; f = f.next) {
+					if (!seen[f.fnum] && attends(g.members[f.fnum], school)) {
+						seen[f.fnum] = true;
+						queue.add(f.fnum);
+					}
+				}
+			}
+			set.add(clique);
+		}
+		return set;
+	}
+
+	private static boolean attends(Person p, String school) {
+		return p.student && p.school.equals(school);
+	}
+
+	/*
+	 * Cliques as sets of names, in no order
+	 */
+	private static HashSet<TreeSet<String>> cliqueSet(ArrayList<ArrayList<String>> cliques) {
+		HashSet<TreeSet<String>> set = new HashSet<TreeSet<String>>();
+		for (ArrayList<String> clique : cliques)
+			set.add(new TreeSet<String>(clique));
+		return set;
+	}
+
+	private static void fail(String name, String problem, String[] query) {
+		throw new IllegalStateException(name + ": " + problem + " for " + String.join(", ", query));
+	}
+}
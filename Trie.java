@@ -1,6 +1,12 @@
 package trie;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import metrics.Metrics;
 
 /**
  * This class implements a Trie. 
@@ -157,6 +163,141 @@ public class Trie {
 		return root;
 	}
 	
+	/**
+	 * Builds a trie of all the words on all cores. The words are split into buckets by
+	 * their first character, keeping their order within each bucket. Words in different
+	 * buckets never share a node, so each bucket's subtrie is built on its own in a
+	 * ForkJoinPool, by inserting its words one at a time, and the subtries are then
+	 * chained as siblings under the root in the order their first words appear in the
+	 * input. As in buildTrie, no word may be a prefix of another.
+	 *
+	 * @param allWords Input array of words (lowercase) to be inserted.
+	 * @return Root of trie with all words inserted from the input array
+	 * @throws IllegalArgumentException If a word is empty or too long, or one word is a
+	 *         prefix of another
+	 */
+	public static TrieNode buildTrieParallel(String[] allWords)
+	throws IllegalArgumentException {
+		if (allWords.length == 0)
+			return null;
+
+		LinkedHashMap<Character, ArrayList<Integer>> buckets = new LinkedHashMap<Character, ArrayList<Integer>>();
+		for (int i = 0; i < allWords.length; i++) {
+			if (allWords[i].length() < 1 || allWords[i].length() > Short.MAX_VALUE)
+				throw new IllegalArgumentException("Word length out of range: " + allWords[i].length());
+			Character first = allWords[i].charAt(0);
+			ArrayList<Integer> bucket = buckets.get(first);
+			if (bucket == null) {
+				bucket = new ArrayList<Integer>();
+				buckets.put(first, bucket);
+			}
+			bucket.add(i);
+		}
+
+		ArrayList<ForkJoinTask<TrieNode>> tasks = new ArrayList<ForkJoinTask<TrieNode>>();
+		for (ArrayList<Integer> bucket : buckets.values())
+			tasks.add(ForkJoinPool.commonPool().submit(() -> buildBucket(allWords, bucket)));
+
+		TrieNode root = new TrieNode(null, null, null), prev = null;
+		for (ForkJoinTask<TrieNode> task : tasks) {
+			TrieNode top = task.join();
+			if (prev == null) root.firstChild = top;
+			else prev.sibling = top;
+			prev = top;
+		}
+		return root;
+	}
+
+	/*
+	 * Builds the subtrie for one bucket of words that all start with the same character,
+	 * and returns its single top node.
+	 */
+	private static TrieNode buildBucket(String[] allWords, ArrayList<Integer> bucket) {
+		Bucket nodes = new Bucket(allWords);
+		for (int i : bucket)
+			nodes.insert(i);
+		return nodes.link();
+	}
+
+	/*
+	 * The nodes of one bucket, for the trie algorithms in TrieNodes. A node's handle is
+	 * its position in nodes, node 0 is a dummy root above the bucket's top node, and the
+	 * handles of children and siblings are kept in arrays until link sets the TrieNode
+	 * references.
+	 */
+	private static class Bucket implements TrieNodes.Writable {
+		private final String[] allWords;
+		private final ArrayList<TrieNode> nodes = new ArrayList<TrieNode>();
+		private int[] child = new int[16], sibling = new int[16];
+
+		Bucket(String[] allWords) {
+			this.allWords = allWords;
+			nodes.add(new TrieNode(null, null, null));
+			child[0] = NONE;
+			sibling[0] = NONE;
+		}
+
+		TrieNode link() {
+			for (int i = 0; i < nodes.size(); i++) {
+				nodes.get(i).firstChild = child[i] == NONE ? null : nodes.get(child[i]);
+				nodes.get(i).sibling = sibling[i] == NONE ? null : nodes.get(sibling[i]);
+			}
+			return nodes.get(0).firstChild;
+		}
+
+		public int root() {
+			return 0;
+		}
+
+		public int wordIndex(int node) {
+			return nodes.get(node).substr.wordIndex;
+		}
+
+		public int endIndex(int node) {
+			return nodes.get(node).substr.endIndex;
+		}
+
+		public int firstChild(int node) {
+			return child[node];
+		}
+
+		public int sibling(int node) {
+			return sibling[node];
+		}
+
+		public char charAt(int node, int pos) {
+			return allWords[nodes.get(node).substr.wordIndex].charAt(pos);
+		}
+
+		public int newNode(int wordIndex, int startIndex, int endIndex) {
+			int n = nodes.size();
+			if (n == child.length) {
+				child = Arrays.copyOf(child, 2 * n);
+				sibling = Arrays.copyOf(sibling, 2 * n);
+			}
+			nodes.add(new TrieNode(new Indexes(wordIndex, (short) startIndex, (short) endIndex), null, null));
+			child[n] = NONE;
+			sibling[n] = NONE;
+			return n;
+		}
+
+		public void setStartIndex(int node, int startIndex) {
+			nodes.get(node).substr.startIndex = (short) startIndex;
+		}
+
+		public void setFirstChild(int node, int child) {
+			this.child[node] = child;
+		}
+
+		public void setSibling(int node, int sibling) {
+			this.sibling[node] = sibling;
+		}
+
+		public String word(int wordIndex) {
+			return allWords[wordIndex];
+		}
+	}
+	
 	static String getStr(TrieNode node, String[] allWords) {
 		if (node == null) return "";
 		if (node.substr.startIndex == node.substr.endIndex && node.substr.endIndex < allWords[node.substr.wordIndex].length())
@@ -185,6 +326,21 @@ public class Trie {
 	 */
 	public static ArrayList<TrieNode> completionList(TrieNode root,
 										String[] allWords, String prefix) {
+		if (!Metrics.ENABLED)
+			return completionList(root, allWords, prefix, null);
+		Metrics.Probe probe = Metrics.begin("trie.completionList");
+		int[] visited = new int[1];
+		ArrayList<TrieNode> nodes = completionList(root, allWords, prefix, visited);
+		probe.end(visited[0]);
+		return nodes;
+	}
+	
+	/*
+	 * Finds the completion list. If visited is not null, visited[0] is raised by the
+	 * number of nodes looked at.
+	 */
+	private static ArrayList<TrieNode> completionList(TrieNode root,
+										String[] allWords, String prefix, int[] visited) {
 		if (root == null || prefix == null || prefix.length() < 1)
 			return null;
 		
@@ -201,6 +357,7 @@ public class Trie {
 				}
 			}
 			while (temp != null) {
+				if (visited != null) visited[0]++;
 				comtemp = "";
 				for (int k = 0; k < prefix.length() && k < allWords[temp.substr.wordIndex].substring(0, temp.substr.endIndex + 1).length(); k++) {
 					if (prefix.charAt(k) == allWords[temp.substr.wordIndex].substring(0, temp.substr.endIndex + 1).charAt(k)) {
@@ -223,19 +380,112 @@ public class Trie {
 			nodes.add(above);
 			return nodes;
 		}
-		nodes = leafs(above.firstChild, nodes);
+		nodes = leafs(above.firstChild, nodes, visited);
 		if (!allWords[nodes.get(0).substr.wordIndex].contains(prefix)) return null;
 		return nodes;
 	}
 	
 	static ArrayList<TrieNode> leafs(TrieNode node, ArrayList<TrieNode> nodes) {
+		return leafs(node, nodes, null);
+	}
+	
+	private static ArrayList<TrieNode> leafs(TrieNode node, ArrayList<TrieNode> nodes, int[] visited) {
 		if (node == null) return null;
-		if (node.firstChild != null) leafs(node.firstChild, nodes);
-		if (node.sibling != null) leafs(node.sibling, nodes);
+		if (visited != null) visited[0]++;
+		if (node.firstChild != null) leafs(node.firstChild, nodes, visited);
+		if (node.sibling != null) leafs(node.sibling, nodes, visited);
 		if (node.firstChild == null) nodes.add(node);
 		return nodes;
 	}
 	
+	/**
+	 * Given a trie, returns the "fuzzy completion list" for a query, i.e. all the leaf nodes
+	 * in the trie whose words start with some prefix that is within maxEdits Levenshtein
+	 * edits (insertions, deletions or substitutions) of the query.
+	 * For instance, if the trie had the words "bear", "bull", "stock", and "bell",
+	 * the fuzzy completion list for query "bul" with 1 edit would be the leaf nodes that
+	 * hold "bull" (prefix "bul") and "bell" (prefix "bel"), but not "bear" or "stock".
+	 *
+	 * The trie is walked once, carrying one row of the edit distance table per character
+	 * on the path, so any subtree whose row cannot get back under maxEdits is skipped
+	 * without looking at its words.
+	 *
+	 * @param root Root of Trie that stores all words to search on for completion lists
+	 * @param allWords Array of words that have been inserted into the trie
+	 * @param query Query (possibly misspelled prefix) to be completed with words in trie
+	 * @param maxEdits Maximum number of edits allowed between query and word prefix
+	 * @return List of all leaf nodes in trie that hold matching words, order of leaf nodes
+	 *         does not matter. If there is no such word in the trie, null is returned.
+	 */
+	public static ArrayList<TrieNode> fuzzyCompletions(TrieNode root,
+										String[] allWords, String query, int maxEdits) {
+		return fuzzy(root, allWords, query, maxEdits, true);
+	}
+
+	/**
+	 * Given a trie, returns all the leaf nodes whose complete words are within maxEdits
+	 * Levenshtein edits of the query. Same as fuzzyCompletions, except that the whole
+	 * word has to match, not just a prefix of it.
+	 *
+	 * @param root Root of Trie that stores all words to search on
+	 * @param allWords Array of words that have been inserted into the trie
+	 * @param query Query (possibly misspelled word) to be matched with words in trie
+	 * @param maxEdits Maximum number of edits allowed between query and word
+	 * @return List of all leaf nodes in trie that hold matching words, order of leaf nodes
+	 *         does not matter. If there is no such word in the trie, null is returned.
+	 */
+	public static ArrayList<TrieNode> fuzzyMatches(TrieNode root,
+										String[] allWords, String query, int maxEdits) {
+		return fuzzy(root, allWords, query, maxEdits, false);
+	}
+
+	private static ArrayList<TrieNode> fuzzy(TrieNode root, String[] allWords, String query, int maxEdits, boolean prefix) {
+		if (root == null || query == null || maxEdits < 0)
+			return null;
+
+		int[] row = new int[query.length() + 1];
+		for (int k = 0; k < row.length; k++)
+			row[k] = k;
+
+		ArrayList<TrieNode> nodes = new ArrayList<TrieNode>();
+		for (TrieNode ptr = root.firstChild; ptr != null; ptr = ptr.sibling)
+			fuzzy(ptr, allWords, query, maxEdits, prefix, row, nodes);
+
+		return nodes.isEmpty() ? null : nodes;
+	}
+
+	private static void fuzzy(TrieNode node, String[] allWords, String query, int maxEdits, boolean prefix, int[] above, ArrayList<TrieNode> nodes) {
+		String word = allWords[node.substr.wordIndex];
+		int[] row = above;
+		for (int i = node.substr.startIndex; i <= node.substr.endIndex; i++) {
+			char c = word.charAt(i);
+			int[] next = new int[row.length];
+			next[0] = row[0] + 1;
+			int min = next[0];
+			for (int k = 1; k < next.length; k++) {
+				int cost = query.charAt(k - 1) == c ? 0 : 1;
+				next[k] = Math.min(Math.min(next[k - 1] + 1, row[k] + 1), row[k - 1] + cost);
+				if (next[k] < min) min = next[k];
+			}
+			if (min > maxEdits)
+				return;
+			row = next;
+			if (prefix && row[row.length - 1] <= maxEdits) {
+				// some prefix of every word below already matches the query
+				if (node.firstChild == null) nodes.add(node);
+				else leafs(node.firstChild, nodes);
+				return;
+			}
+		}
+
+		if (node.firstChild == null) {
+			if (row[row.length - 1] <= maxEdits) nodes.add(node);
+			return;
+		}
+		for (TrieNode ptr = node.firstChild; ptr != null; ptr = ptr.sibling)
+			fuzzy(ptr, allWords, query, maxEdits, prefix, row, nodes);
+	}
+
 	public static void print(TrieNode root, String[] allWords) {
 		System.out.println("\nTRIE\n");
 		print(root, 1, allWords);
@@ -0,0 +1,157 @@
+package trie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Access by int handle to the nodes of a compressed trie shaped like the one built by
+ * Trie.buildTrie, so that the algorithms over it are written once, wherever the nodes
+ * are kept: in heap arrays, in an off-heap arena or in a mapped snapshot file.
+ *
+ * Every node other than the root holds the Indexes of its substring, the handle of its
+ * first child and the handle of its next sibling. NONE stands for no node.
+ *
+ */
+interface TrieNodes {
+
+	int NONE = -1;
+
+	/**
+	 * Handle of the root, which holds no substring
+	 */
+	int root();
+
+	int wordIndex(int node);
+
+	int endIndex(int node);
+
+	int firstChild(int node);
+
+	int sibling(int node);
+
+	/**
+	 * Character at a position of the word that a node points into
+	 */
+	char charAt(int node, int pos);
+
+	/**
+	 * Given a prefix, returns the indexes of all the words in the trie that start with it.
+	 *
+	 * @param prefix Prefix to be completed with words in trie
+	 * @return Indexes of all words that start with the prefix, order does not matter.
+	 *         Null if there is none
+	 */
+	default ArrayList<Integer> completionList(String prefix) {
+		if (prefix == null || prefix.length() < 1)
+			return null;
+
+		int node = root(), pos = 0;
+		while (pos < prefix.length()) {
+			int child = firstChild(node);
+			while (child != NONE && charAt(child, pos) != prefix.charAt(pos))
+				child = sibling(child);
+			if (child == NONE)
+				return null;
+			int end = endIndex(child);
+			for (; pos <= end && pos < prefix.length(); pos++) {
+				if (charAt(child, pos) != prefix.charAt(pos))
+					return null;
+			}
+			node = child;
+		}
+
+		ArrayList<Integer> words = new ArrayList<Integer>();
+		if (firstChild(node) == NONE) {
+			words.add(wordIndex(node));
+			return words;
+		}
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = firstChild(node);
+		while (top > 0) {
+			int n = stack[--top];
+			if (top + 2 > stack.length)
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			int sibling = sibling(n), child = firstChild(n);
+			if (sibling != NONE) stack[top++] = sibling;
+			if (child != NONE) stack[top++] = child;
+			else words.add(wordIndex(n));
+		}
+		return words;
+	}
+
+	/**
+	 * Nodes that words can be inserted into.
+	 */
+	interface Writable extends TrieNodes {
+
+		/**
+		 * Creates a node with no child and no sibling, and returns its handle.
+		 */
+		int newNode(int wordIndex, int startIndex, int endIndex);
+
+		void setStartIndex(int node, int startIndex);
+
+		void setFirstChild(int node, int child);
+
+		void setSibling(int node, int sibling);
+
+		/**
+		 * Word by its index
+		 */
+		String word(int wordIndex);
+
+		/**
+		 * Inserts a word under the root. A child whose substring shares only part of the
+		 * word's next characters is split at the end of the common part, and a new leaf
+		 * goes at the end of its siblings.
+		 *
+		 * @param wordIndex Index of the word
+		 * @throws IllegalArgumentException If the word is empty or too long, or it and a
+		 *         word already in the trie are one a prefix of the other
+		 */
+		default void insert(int wordIndex)
+		throws IllegalArgumentException {
+			String word = word(wordIndex);
+			if (word.length() < 1 || word.length() > Short.MAX_VALUE)
+				throw new IllegalArgumentException("Word length out of range: " + word.length());
+
+			int parent = root(), pos = 0;
+			while (true) {
+				int child = firstChild(parent), last = NONE;
+				while (child != NONE && charAt(child, pos) != word.charAt(pos)) {
+					last = child;
+					child = sibling(child);
+				}
+				if (child == NONE) {
+					int leaf = newNode(wordIndex, pos, word.length() - 1);
+					if (last == NONE) setFirstChild(parent, leaf);
+					else setSibling(last, leaf);
+					return;
+				}
+
+				int end = endIndex(child), i = pos;
+				while (i <= end && i < word.length() && charAt(child, i) == word.charAt(i))
+					i++;
+				if (i == word.length() || (i > end && firstChild(child) == NONE))
+					throw new IllegalArgumentException("One of " + word + " and "
+							+ word(wordIndex(child)) + " is a prefix of the other");
+				if (i > end) {
+					parent = child;
+					pos = i;
+					continue;
+				}
+
+				// the common part becomes a new node above child
+				int split = newNode(wordIndex(child), pos, i - 1);
+				setFirstChild(split, child);
+				setSibling(split, sibling(child));
+				if (last == NONE) setFirstChild(parent, split);
+				else setSibling(last, split);
+				setStartIndex(child, i);
+				setSibling(child, newNode(wordIndex, i, word.length() - 1));
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package trie;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * This class implements a read-only Trie that lives in a memory-mapped file.
+ *
+ * A built trie is saved once with write, together with the characters of all the words
+ * its Indexes point into. open maps the file and answers queries directly against the
+ * mapped bytes, so nothing is deserialised at startup and every JVM on the host that
+ * opens the same file shares one copy of it in the page cache.
+ *
+ * File layout (all values big-endian):
+ * <pre>
+ *    header    int magic, int version, int wordCount, int nodeCount, long charCount
+ *    nodes     nodeCount x (int wordIndex, short startIndex, short endIndex,
+ *                           int firstChild, int sibling), node 0 is the root,
+ *                           a missing child or sibling is -1
+ *    offsets   (wordCount + 1) x int, start of each word in the character table
+ *    chars     charCount x char, all the words back to back
+ * </pre>
+ * A single mapping is limited to 2GB, and so is the file.
+ *
+ */
+public class TrieSnapshot {
+
+	static final int MAGIC = 0x54524945; // "TRIE"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 24;
+	static final int NODE_BYTES = 16;
+
+	private final ByteBuffer buf;
+	private final int wordCount, nodeCount;
+	private final int offsetsAt, charsAt;
+
+	private TrieSnapshot(ByteBuffer buf) throws IOException {
+		if (buf.capacity() < HEADER_BYTES || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+			throw new IOException("Not a trie snapshot");
+		this.buf = buf;
+		wordCount = buf.getInt(8);
+		nodeCount = buf.getInt(12);
+		offsetsAt = HEADER_BYTES + nodeCount * NODE_BYTES;
+		charsAt = offsetsAt + (wordCount + 1) * 4;
+		if (charsAt + buf.getLong(16) * 2 != buf.capacity())
+			throw new IOException("Truncated trie snapshot");
+	}
+
+	/**
+	 * Maps a snapshot file that was previously saved with write.
+	 *
+	 * @param file Snapshot file
+	 * @return Snapshot that answers queries against the mapped file
+	 * @throws IOException If the file cannot be mapped or is not a trie snapshot
+	 */
+	public static TrieSnapshot open(Path file)
+	throws IOException {
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (ch.size() > Integer.MAX_VALUE)
+				throw new IOException("Trie snapshot larger than 2GB");
+			MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			return new TrieSnapshot(map);
+		}
+	}
+
+	/**
+	 * Saves a trie built by Trie.buildTrie, along with all its words, to a file.
+	 *
+	 * @param root Root of trie, as returned by Trie.buildTrie
+	 * @param allWords Array of words that have been inserted into the trie
+	 * @param file File to write, replaced if it exists
+	 * @throws IOException If the file cannot be written
+	 */
+	public static void write(TrieNode root, String[] allWords, Path file)
+	throws IOException {
+		// number the nodes in preorder, the root first
+		ArrayList<TrieNode> nodes = new ArrayList<TrieNode>();
+		IdentityHashMap<TrieNode, Integer> ids = new IdentityHashMap<TrieNode, Integer>();
+		ArrayList<TrieNode> stack = new ArrayList<TrieNode>();
+		if (root != null) stack.add(root);
+		while (!stack.isEmpty()) {
+			TrieNode node = stack.remove(stack.size() - 1);
+			ids.put(node, nodes.size());
+			nodes.add(node);
+			if (node.sibling != null) stack.add(node.sibling);
+			if (node.firstChild != null) stack.add(node.firstChild);
+		}
+
+		long charCount = 0;
+		for (String word : allWords)
+			charCount += word.length();
+		long size = HEADER_BYTES + (long) nodes.size() * NODE_BYTES + (allWords.length + 1) * 4L + charCount * 2;
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Trie snapshot larger than 2GB");
+
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer out = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			out.putInt(MAGIC).putInt(VERSION).putInt(allWords.length).putInt(nodes.size()).putLong(charCount);
+			for (TrieNode node : nodes) {
+				if (node.substr == null)
+					out.putInt(-1).putShort((short) 0).putShort((short) -1);
+				else
+					out.putInt(node.substr.wordIndex).putShort(node.substr.startIndex).putShort(node.substr.endIndex);
+				out.putInt(node.firstChild == null ? -1 : ids.get(node.firstChild));
+				out.putInt(node.sibling == null ? -1 : ids.get(node.sibling));
+			}
+			int offset = 0;
+			for (String word : allWords) {
+				out.putInt(offset);
+				offset += word.length();
+			}
+			out.putInt(offset);
+			for (String word : allWords)
+				for (int i = 0; i < word.length(); i++)
+					out.putChar(word.charAt(i));
+			out.force();
+		}
+	}
+
+	/**
+	 * Number of words in this snapshot
+	 *
+	 * @return Number of words
+	 */
+	public int wordCount() {
+		return wordCount;
+	}
+
+	/**
+	 * Returns a word, by its index in the array the trie was built from.
+	 *
+	 * @param wordIndex Index of word
+	 * @return The word
+	 */
+	public String word(int wordIndex) {
+		int from = buf.getInt(offsetsAt + wordIndex * 4), to = buf.getInt(offsetsAt + wordIndex * 4 + 4);
+		char[] chars = new char[to - from];
+		for (int i = 0; i < chars.length; i++)
+			chars[i] = charAt(from + i);
+		return new String(chars);
+	}
+
+	/**
+	 * Given a prefix, returns the indexes of all the words in the snapshot that start with
+	 * this prefix. Same as Trie.completionList, except that the result holds word indexes
+	 * instead of leaf nodes. Use word to get at the words themselves.
+	 *
+	 * @param prefix Prefix to be completed with words in trie
+	 * @return List of indexes of all words that start with the prefix, order does not matter.
+	 *         If there is no word in the trie that has this prefix, null is returned.
+	 */
+	public ArrayList<Integer> completionList(String prefix) {
+		if (nodeCount == 0)
+			return null;
+		return view.completionList(prefix);
+	}
+
+	/*
+	 * The mapped nodes, for the trie algorithms in TrieNodes
+	 */
+	private final TrieNodes view = new TrieNodes() {
+		public int root() {
+			return 0;
+		}
+
+		public int wordIndex(int node) {
+			return TrieSnapshot.this.wordIndex(node);
+		}
+
+		public int endIndex(int node) {
+			return TrieSnapshot.this.endIndex(node);
+		}
+
+		public int firstChild(int node) {
+			return TrieSnapshot.this.firstChild(node);
+		}
+
+		public int sibling(int node) {
+			return TrieSnapshot.this.sibling(node);
+		}
+
+		public char charAt(int node, int pos) {
+			return charOf(node, pos);
+		}
+	};
+
+	private int wordIndex(int node) {
+		return buf.getInt(HEADER_BYTES + node * NODE_BYTES);
+	}
+
+	private int endIndex(int node) {
+		return buf.getShort(HEADER_BYTES + node * NODE_BYTES + 6);
+	}
+
+	private int firstChild(int node) {
+		return buf.getInt(HEADER_BYTES + node * NODE_BYTES + 8);
+	}
+
+	private int sibling(int node) {
+		return buf.getInt(HEADER_BYTES + node * NODE_BYTES + 12);
+	}
+
+	/*
+	 * Character at position i of the word that node points into
+	 */
+	private char charOf(int node, int i) {
+		return charAt(buf.getInt(offsetsAt + wordIndex(node) * 4) + i);
+	}
+
+	private char charAt(int c) {
+		return buf.getChar(charsAt + c * 2);
+	}
+}
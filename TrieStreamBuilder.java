@@ -0,0 +1,354 @@
+package trie;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * This class builds a Trie from a sorted stream of words, without ever holding the words
+ * as Strings or the nodes as TrieNode objects.
+ *
+ * Words have to arrive in ascending order, as the trie can then be grown along the path
+ * of the previous word only: everything to the left of that path is final. Node records
+ * (the same wordIndex/startIndex/endIndex/firstChild/sibling fields as a TrieNode) are
+ * appended to an off-heap arena, and the characters of the words to an off-heap word
+ * store, so the Java heap only ever holds the current path. The result is saved in the
+ * TrieSnapshot file format.
+ *
+ * As with Trie.buildTrie, no word may be a prefix of another word.
+ *
+ * The snapshot is a single mapping, so the whole file is limited to 2GB: each word takes
+ * 2 bytes per character, 4 bytes in the offset table and up to two 16-byte nodes. That is
+ * about 40 million words of 8 letters, fewer for longer words, and add refuses a word
+ * that would take the file past the limit. While building, the arenas take about as much
+ * direct memory as the file will, starting at a few hundred KB; they are released when
+ * the trie is written.
+ *
+ */
+public class TrieStreamBuilder {
+
+	/**
+	 * Append-only off-heap storage, made of direct buffers that start small and double in
+	 * size up to a cap, so a small dictionary only takes a little direct memory. Records
+	 * are fixed-size and every chunk size and chunk start is a multiple of every record
+	 * size, so no record ever straddles two chunks.
+	 */
+	private static final class Arena {
+		static final int FIRST_BITS = 16;
+		static final int CAP_BITS = 26;
+		static final int DOUBLINGS = CAP_BITS - FIRST_BITS;
+		static final long CAP = 1L << CAP_BITS;
+		// offset of the first chunk that has the capped size
+		static final long CAPPED_AT = CAP - (1L << FIRST_BITS);
+
+		ArrayList<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+		long size = 0, capacity = 0;
+
+		long allocate(int bytes) {
+			if (size == capacity) {
+				int i = chunks.size();
+				int bits = FIRST_BITS + Math.min(i, DOUBLINGS);
+				chunks.add(ByteBuffer.allocateDirect(1 << bits));
+				capacity += 1L << bits;
+			}
+			long at = size;
+			size += bytes;
+			return at;
+		}
+
+		/*
+		 * Index of the chunk that holds offset at
+		 */
+		static int index(long at) {
+			if (at < CAPPED_AT)
+				return 63 - Long.numberOfLeadingZeros((at >>> FIRST_BITS) + 1);
+			return DOUBLINGS + (int) ((at - CAPPED_AT) >>> CAP_BITS);
+		}
+
+		/*
+		 * Offset at which chunk i starts
+		 */
+		static long start(int i) {
+			if (i <= DOUBLINGS)
+				return ((1L << i) - 1) << FIRST_BITS;
+			return CAPPED_AT + ((long) (i - DOUBLINGS) << CAP_BITS);
+		}
+
+		ByteBuffer chunk(int i) {
+			if (chunks == null)
+				throw new IllegalStateException("Builder already written");
+			return chunks.get(i);
+		}
+
+		int getInt(long at) { int i = index(at); return chunk(i).getInt((int) (at - start(i))); }
+		void putInt(long at, int v) { int i = index(at); chunk(i).putInt((int) (at - start(i)), v); }
+		short getShort(long at) { int i = index(at); return chunk(i).getShort((int) (at - start(i))); }
+		void putShort(long at, short v) { int i = index(at); chunk(i).putShort((int) (at - start(i)), v); }
+		void putLong(long at, long v) { int i = index(at); chunk(i).putLong((int) (at - start(i)), v); }
+		long getLong(long at) { int i = index(at); return chunk(i).getLong((int) (at - start(i))); }
+		void putChar(long at, char v) { int i = index(at); chunk(i).putChar((int) (at - start(i)), v); }
+
+		/*
+		 * Writes the first count bytes of the arena to a channel
+		 */
+		void writeTo(FileChannel ch, long count) throws IOException {
+			for (int i = 0; count > 0; i++) {
+				ByteBuffer part = chunk(i).duplicate();
+				part.position(0).limit((int) Math.min(part.capacity(), count));
+				count -= part.remaining();
+				while (part.hasRemaining())
+					ch.write(part);
+			}
+		}
+
+		/*
+		 * Drops the chunks, so their direct memory is freed once they are collected
+		 */
+		void release() {
+			chunks = null;
+		}
+	}
+
+	private final Arena nodes = new Arena(), offsets = new Arena(), chars = new Arena();
+	private int nodeCount = 0, wordCount = 0;
+
+	// path[0..depth] are the nodes on the path of the previous word, root first
+	private int[] path = new int[16];
+	private int depth = 0;
+	private final StringBuilder previous = new StringBuilder();
+
+	/**
+	 * Initializes a builder for an empty trie.
+	 */
+	public TrieStreamBuilder() {
+		newNode(-1, (short) 0, (short) -1);
+		path[0] = 0;
+	}
+
+	/**
+	 * Builds a trie from a sorted sequence of words and saves it as a snapshot file.
+	 *
+	 * @param words Words (lowercase) in ascending order
+	 * @param file Snapshot file to write
+	 * @return Snapshot mapped from the written file
+	 * @throws IOException If the file cannot be written
+	 * @throws IllegalArgumentException If the words are not sorted, or one is a prefix of the next
+	 * @throws IllegalStateException If the snapshot would be larger than 2GB
+	 */
+	public static TrieSnapshot build(Iterator<? extends CharSequence> words, Path file)
+	throws IOException, IllegalArgumentException, IllegalStateException {
+		TrieStreamBuilder builder = new TrieStreamBuilder();
+		while (words.hasNext())
+			builder.add(words.next());
+		builder.write(file);
+		return TrieSnapshot.open(file);
+	}
+
+	/**
+	 * Builds a trie from sorted words, one per line, and saves it as a snapshot file.
+	 * Blank lines are skipped.
+	 *
+	 * @param in Reader for words (lowercase) in ascending order
+	 * @param file Snapshot file to write
+	 * @return Snapshot mapped from the written file
+	 * @throws IOException If the input cannot be read or the file cannot be written
+	 * @throws IllegalArgumentException If the words are not sorted, or one is a prefix of the next
+	 * @throws IllegalStateException If the snapshot would be larger than 2GB
+	 */
+	public static TrieSnapshot build(Reader in, Path file)
+	throws IOException, IllegalArgumentException, IllegalStateException {
+		BufferedReader br = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+		TrieStreamBuilder builder = new TrieStreamBuilder();
+		String line;
+		while ((line = br.readLine()) != null) {
+			line = line.trim();
+			if (line.length() > 0)
+				builder.add(line);
+		}
+		builder.write(file);
+		return TrieSnapshot.open(file);
+	}
+
+	/**
+	 * Builds a trie from a UTF-8 file of sorted words, one per line, and saves it as a
+	 * snapshot file.
+	 *
+	 * @param words File of words (lowercase) in ascending order
+	 * @param file Snapshot file to write
+	 * @return Snapshot mapped from the written file
+	 * @throws IOException If the input cannot be read or the file cannot be written
+	 * @throws IllegalArgumentException If the words are not sorted, or one is a prefix of the next
+	 * @throws IllegalStateException If the snapshot would be larger than 2GB
+	 */
+	public static TrieSnapshot build(Path words, Path file)
+	throws IOException, IllegalArgumentException, IllegalStateException {
+		try (BufferedReader br = Files.newBufferedReader(words, StandardCharsets.UTF_8)) {
+			return build(br, file);
+		}
+	}
+
+	/**
+	 * Number of words added so far
+	 *
+	 * @return Number of words
+	 */
+	public int wordCount() {
+		return wordCount;
+	}
+
+	/**
+	 * Adds the next word. A word equal to the previous one is ignored.
+	 *
+	 * @param word Word to be added, greater than all the words added before it
+	 * @throws IllegalArgumentException If the word is empty, too long, out of order,
+	 *         or has the previous word as a prefix
+	 * @throws IllegalStateException If the snapshot would grow larger than 2GB, or the
+	 *         trie has already been written
+	 */
+	public void add(CharSequence word)
+	throws IllegalArgumentException, IllegalStateException {
+		int length = word.length();
+		if (length == 0 || length > Short.MAX_VALUE)
+			throw new IllegalArgumentException("Word length out of range: " + length);
+		if (nodes.chunks == null)
+			throw new IllegalStateException("Builder already written");
+		if (snapshotBytes() + 2 * TrieSnapshot.NODE_BYTES + 4 + 2L * length > Integer.MAX_VALUE)
+			throw new IllegalStateException("Trie snapshot would be larger than 2GB at " + word);
+
+		int l = 0;
+		while (l < length && l < previous.length() && word.charAt(l) == previous.charAt(l))
+			l++;
+		if (l == length && l == previous.length())
+			return;
+		if (l == length || (l < previous.length() && word.charAt(l) < previous.charAt(l)))
+			throw new IllegalArgumentException("Words out of order at " + word);
+		if (wordCount > 0 && l == previous.length())
+			throw new IllegalArgumentException(previous + " is a prefix of " + word);
+
+		int index = wordCount++;
+		long at = offsets.allocate(8);
+		offsets.putLong(at, chars.size);
+		for (int i = 0; i < length; i++)
+			chars.putChar(chars.allocate(2), word.charAt(i));
+		previous.setLength(0);
+		previous.append(word);
+
+		int leaf = newNode(index, (short) l, (short) (length - 1));
+		if (depth == 0) {
+			setFirstChild(0, leaf);
+			push(1, leaf);
+			return;
+		}
+
+		// deepest node on the previous path that lies wholly inside the common prefix
+		int d = 0;
+		while (d < depth && endIndex(path[d + 1]) < l)
+			d++;
+		int c = path[d + 1];
+		if (startIndex(c) == l) {
+			// the word branches off right where c starts, c is the last child of path[d]
+			setSibling(c, leaf);
+			push(d + 1, leaf);
+		}
+		else {
+			// the word branches off inside c, split c at l
+			int tail = newNode(wordIndex(c), (short) l, endIndex(c));
+			setFirstChild(tail, firstChild(c));
+			setFirstChild(c, tail);
+			setEndIndex(c, (short) (l - 1));
+			setSibling(tail, leaf);
+			push(d + 2, leaf);
+		}
+	}
+
+	/*
+	 * Size of the snapshot file for the words added so far
+	 */
+	private long snapshotBytes() {
+		return TrieSnapshot.HEADER_BYTES + nodes.size + (wordCount + 1) * 4L + chars.size;
+	}
+
+	/**
+	 * Saves the trie in the TrieSnapshot file format, and releases the off-heap storage.
+	 * No more words can be added afterwards.
+	 *
+	 * @param file Snapshot file to write, replaced if it exists
+	 * @throws IOException If the file cannot be written
+	 * @throws IllegalStateException If the trie has already been written
+	 */
+	public void write(Path file)
+	throws IOException, IllegalStateException {
+		if (nodes.chunks == null)
+			throw new IllegalStateException("Builder already written");
+
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(TrieSnapshot.HEADER_BYTES);
+			header.putInt(TrieSnapshot.MAGIC).putInt(TrieSnapshot.VERSION).putInt(wordCount).putInt(nodeCount).putLong(chars.size / 2);
+			header.flip();
+			while (header.hasRemaining())
+				ch.write(header);
+
+			nodes.writeTo(ch, nodes.size);
+
+			ByteBuffer table = ByteBuffer.allocate(8192);
+			for (int i = 0; i <= wordCount; i++) {
+				if (!table.hasRemaining()) {
+					table.flip();
+					while (table.hasRemaining())
+						ch.write(table);
+					table.clear();
+				}
+				table.putInt((int) ((i == wordCount ? chars.size : offsets.getLong(i * 8L)) / 2));
+			}
+			table.flip();
+			while (table.hasRemaining())
+				ch.write(table);
+
+			chars.writeTo(ch, chars.size);
+			ch.force(false);
+		} finally {
+			nodes.release();
+			offsets.release();
+			chars.release();
+		}
+	}
+
+	private void push(int d, int node) {
+		if (d >= path.length)
+			path = Arrays.copyOf(path, path.length * 2);
+		path[d] = node;
+		depth = d;
+	}
+
+	private int newNode(int wordIndex, short startIndex, short endIndex) {
+		long at = nodes.allocate(TrieSnapshot.NODE_BYTES);
+		nodes.putInt(at, wordIndex);
+		nodes.putShort(at + 4, startIndex);
+		nodes.putShort(at + 6, endIndex);
+		nodes.putInt(at + 8, -1);
+		nodes.putInt(at + 12, -1);
+		return nodeCount++;
+	}
+
+	private long at(int node) {
+		return (long) node * TrieSnapshot.NODE_BYTES;
+	}
+
+	private int wordIndex(int node) { return nodes.getInt(at(node)); }
+	private short startIndex(int node) { return nodes.getShort(at(node) + 4); }
+	private short endIndex(int node) { return nodes.getShort(at(node) + 6); }
+	private int firstChild(int node) { return nodes.getInt(at(node) + 8); }
+	private void setEndIndex(int node, short v) { nodes.putShort(at(node) + 6, v); }
+	private void setFirstChild(int node, int v) { nodes.putInt(at(node) + 8, v); }
+	private void setSibling(int node, int v) { nodes.putInt(at(node) + 12, v); }
+}